@@ -0,0 +1,104 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import com.bergerkiller.bukkit.common.BlockLocation;
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures route lookups over generated rail networks.
+ * <ul>
+ * <li>findConnection: lookup with the routing table of the destination already computed</li>
+ * <li>findConnectionChanged: lookup right after the graph changed, computing the routing table</li>
+ * <li>findRoute: search of the full route between two nodes</li>
+ * </ul>
+ * Source and destination nodes are picked at random, from a fixed set of destinations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PathFindingBenchmark {
+    private static final int PAIR_COUNT = 1024;
+    private static final int DESTINATION_COUNT = 16;
+
+    @Param({"GRID", "LINE_WITH_SIDINGS", "HUB_AND_SPOKE", "RANDOM_PLANAR"})
+    public SyntheticGraph.Shape shape;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int nodes;
+
+    private PathNode[] sources = new PathNode[PAIR_COUNT];
+    private PathNode[] destinations = new PathNode[PAIR_COUNT];
+    private PathNode changeFrom, changeTo;
+    private int pair = 0;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        List<PathNode> graph = SyntheticGraph.generate(this.shape, this.nodes, 1L).getNodes();
+        Random random = new Random(2L);
+        PathNode[] destinationSet = new PathNode[DESTINATION_COUNT];
+        for (int i = 0; i < DESTINATION_COUNT; i++) {
+            destinationSet[i] = graph.get(random.nextInt(graph.size()));
+        }
+        for (int i = 0; i < PAIR_COUNT; i++) {
+            this.sources[i] = graph.get(random.nextInt(graph.size()));
+            this.destinations[i] = destinationSet[random.nextInt(DESTINATION_COUNT)];
+        }
+
+        // Two nodes apart from the network, connected and disconnected to change the graph
+        this.changeFrom = PathNode.getOrCreate("change_from", new BlockLocation(SyntheticGraph.WORLD, 0, 0, -1000));
+        this.changeTo = PathNode.getOrCreate("change_to", new BlockLocation(SyntheticGraph.WORLD, 0, 0, -1016));
+
+        // Compute all routing tables up front
+        for (PathNode destination : destinationSet) {
+            destination.findConnection(destination);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PathNode.clearAll();
+    }
+
+    @Benchmark
+    public PathConnection findConnection() {
+        int pair = nextPair();
+        return this.sources[pair].findConnection(this.destinations[pair]);
+    }
+
+    @Benchmark
+    public PathConnection findConnectionChanged() {
+        this.changeFrom.addNeighbour(this.changeTo, 16, BlockFace.NORTH);
+        this.changeFrom.removeNeighbours(BlockFace.NORTH);
+        int pair = nextPair();
+        return this.sources[pair].findConnection(this.destinations[pair]);
+    }
+
+    @Benchmark
+    public PathNode[] findRoute() {
+        int pair = nextPair();
+        return this.sources[pair].findRoute(this.destinations[pair]);
+    }
+
+    private int nextPair() {
+        return (this.pair++) & (PAIR_COUNT - 1);
+    }
+}
@@ -0,0 +1,44 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import java.util.Locale;
+
+/**
+ * Measures the heap memory used per node by generated rail networks, including
+ * their connections and the indices kept of them. Printed per network shape and size.
+ * The memory used is measured after garbage collection, so the results are estimates.
+ */
+public class PathMemoryFootprint {
+    private static final int[] NODE_COUNTS = {100, 1000, 10000, 100000};
+
+    public static void main(String[] args) {
+        System.out.println("shape                 nodes   connections   bytes/node");
+        for (SyntheticGraph.Shape shape : SyntheticGraph.Shape.values()) {
+            for (int nodeCount : NODE_COUNTS) {
+                PathNode.clearAll();
+                long before = getUsedMemory();
+                SyntheticGraph graph = SyntheticGraph.generate(shape, nodeCount, 1L);
+                long after = getUsedMemory();
+                int connections = 0;
+                for (PathNode node : graph.getNodes()) {
+                    connections += node.getConnectionCount();
+                }
+                System.out.println(String.format(Locale.ENGLISH, "%-20s %7d %13d %12.1f",
+                        shape, nodeCount, connections, (double) (after - before) / nodeCount));
+            }
+        }
+        PathNode.clearAll();
+    }
+
+    private static long getUsedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
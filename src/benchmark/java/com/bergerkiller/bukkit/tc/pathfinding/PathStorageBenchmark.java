@@ -0,0 +1,82 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import com.bergerkiller.bukkit.common.config.CompressedDataWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading and saving generated rail networks in the destinations file format.
+ * Saving is split into the part done on the main thread (capture) and the part done
+ * in the background (write), as {@link PathNode#save(String)} skips unchanged graphs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PathStorageBenchmark {
+
+    @Param({"GRID", "LINE_WITH_SIDINGS", "HUB_AND_SPOKE", "RANDOM_PLANAR"})
+    public SyntheticGraph.Shape shape;
+
+    @Param({"100", "1000", "10000", "100000"})
+    public int nodes;
+
+    private File file;
+    private PathGraphData data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SyntheticGraph.generate(this.shape, this.nodes, 1L);
+        this.file = File.createTempFile("destinations", ".dat");
+        this.file.deleteOnExit();
+        this.data = PathGraphData.capture(PathNode.getNodes(), Collections.<PathNode>emptyList());
+        write();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        PathNode.deinit();
+        this.file.delete();
+    }
+
+    @Benchmark
+    public Object capture() {
+        return PathGraphData.capture(PathNode.getNodes(), Collections.<PathNode>emptyList());
+    }
+
+    @Benchmark
+    public void write() {
+        new CompressedDataWriter(this.file.getAbsolutePath()) {
+            public void write(DataOutputStream stream) throws IOException {
+                stream.writeInt(-PathGraphData.FORMAT_VERSION);
+                data.write(stream);
+            }
+        }.write();
+    }
+
+    @Benchmark
+    public int init() {
+        PathNode.clearAll();
+        PathNode.init(this.file.getAbsolutePath());
+        return PathNode.getNodes().size();
+    }
+}
@@ -0,0 +1,241 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import com.bergerkiller.bukkit.common.BlockLocation;
+import org.bukkit.block.BlockFace;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates rail networks of path nodes without a server. Nodes are placed at block
+ * locations in a world that only exists by name, and connections are added directly
+ * instead of being discovered by following track. Connection distances are the
+ * block distance between the nodes, so they are valid for the search heuristic.
+ */
+public class SyntheticGraph {
+    public static final String WORLD = "benchmark_world";
+    private static final int SPACING = 16; // Blocks between nodes
+
+    public enum Shape {
+        /** Square grid, every node connected with its 4 neighbours */
+        GRID,
+        /** Single main line, with a passing siding at every third node */
+        LINE_WITH_SIDINGS,
+        /** Trunk line of hubs, with dead-end spoke lines branching off every hub */
+        HUB_AND_SPOKE,
+        /** Jittered grid triangulation, thinned out while staying connected */
+        RANDOM_PLANAR
+    }
+
+    private final List<PathNode> nodes = new ArrayList<>();
+
+    private SyntheticGraph() {
+    }
+
+    /**
+     * Removes all current nodes and generates a new network
+     *
+     * @param shape of the network
+     * @param nodeCount amount of nodes to generate
+     * @param seed of the random generator, for networks that use one
+     * @return generated network
+     */
+    public static SyntheticGraph generate(Shape shape, int nodeCount, long seed) {
+        PathNode.clearAll();
+        SyntheticGraph graph = new SyntheticGraph();
+        Random random = new Random(seed);
+        switch (shape) {
+            case GRID:
+                graph.generateGrid(nodeCount);
+                break;
+            case LINE_WITH_SIDINGS:
+                graph.generateLineWithSidings(nodeCount);
+                break;
+            case HUB_AND_SPOKE:
+                graph.generateHubAndSpoke(nodeCount);
+                break;
+            case RANDOM_PLANAR:
+                graph.generateRandomPlanar(nodeCount, random);
+                break;
+        }
+        return graph;
+    }
+
+    /**
+     * Gets all generated nodes, in the order they were generated
+     *
+     * @return nodes
+     */
+    public List<PathNode> getNodes() {
+        return this.nodes;
+    }
+
+    /**
+     * Gets the destination name of a generated node
+     *
+     * @param index of the node
+     * @return destination name
+     */
+    public static String getName(int index) {
+        return "n" + index;
+    }
+
+    private void generateGrid(int nodeCount) {
+        final int side = (int) Math.ceil(Math.sqrt(nodeCount));
+        for (int i = 0; i < nodeCount; i++) {
+            addNode((i % side) * SPACING, (i / side) * SPACING);
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            if ((i % side) + 1 < side && (i + 1) < nodeCount) {
+                connect(i, i + 1);
+            }
+            if ((i + side) < nodeCount) {
+                connect(i, i + side);
+            }
+        }
+    }
+
+    private void generateLineWithSidings(int nodeCount) {
+        int lastMain = -1;
+        int openSiding = -1;
+        int mainCount = 0;
+        while (this.nodes.size() < nodeCount) {
+            int main = addNode(mainCount * SPACING, 0);
+            if (lastMain != -1) {
+                connect(lastMain, main);
+            }
+            if (openSiding != -1) {
+                connect(openSiding, main, BlockFace.EAST, BlockFace.SOUTH);
+                openSiding = -1;
+            }
+            if ((mainCount % 3) == 2 && this.nodes.size() < nodeCount) {
+                // Siding halfway the next main node, switched to from both sides
+                openSiding = addNode(mainCount * SPACING + SPACING / 2, SPACING);
+                connect(main, openSiding, BlockFace.SOUTH, BlockFace.WEST);
+            }
+            lastMain = main;
+            mainCount++;
+        }
+    }
+
+    private void generateHubAndSpoke(int nodeCount) {
+        final int spokesPerHub = 8;
+        final int hubCount = Math.max(1, nodeCount / 49);
+        final int spokeLength = Math.max(1, (nodeCount - hubCount + hubCount * spokesPerHub - 1) / (hubCount * spokesPerHub));
+        final int hubWidth = spokesPerHub / 2 + 1;
+        int[] hubs = new int[hubCount];
+        for (int h = 0; h < hubCount; h++) {
+            hubs[h] = addNode(h * hubWidth * SPACING, 0);
+            if (h > 0) {
+                connect(hubs[h - 1], hubs[h]);
+            }
+        }
+        for (int h = 0; h < hubCount && this.nodes.size() < nodeCount; h++) {
+            for (int s = 0; s < spokesPerHub && this.nodes.size() < nodeCount; s++) {
+                int x = h * hubWidth + (s / 2) + 1;
+                int sign = ((s & 1) == 0) ? 1 : -1;
+                int last = hubs[h];
+                for (int k = 1; k <= spokeLength && this.nodes.size() < nodeCount; k++) {
+                    int node = addNode(x * SPACING, sign * k * SPACING);
+                    connect(last, node);
+                    last = node;
+                }
+            }
+        }
+    }
+
+    private void generateRandomPlanar(int nodeCount, Random random) {
+        final int side = (int) Math.ceil(Math.sqrt(nodeCount));
+        for (int i = 0; i < nodeCount; i++) {
+            // Jitter within the cell keeps locations unique and the triangulation planar
+            int jx = random.nextInt(SPACING / 2) - SPACING / 4;
+            int jz = random.nextInt(SPACING / 2) - SPACING / 4;
+            addNode((i % side) * SPACING + jx, (i / side) * SPACING + jz);
+        }
+
+        // Edges of a triangulated grid: right, down and one diagonal per cell
+        List<int[]> edges = new ArrayList<>();
+        for (int i = 0; i < nodeCount; i++) {
+            int x = i % side;
+            boolean right = (x + 1) < side && (i + 1) < nodeCount;
+            boolean down = (i + side) < nodeCount;
+            if (right) {
+                edges.add(new int[] {i, i + 1});
+            }
+            if (down) {
+                edges.add(new int[] {i, i + side});
+            }
+            if (right && (i + side + 1) < nodeCount) {
+                if (random.nextBoolean()) {
+                    edges.add(new int[] {i, i + side + 1});
+                } else {
+                    edges.add(new int[] {i + 1, i + side});
+                }
+            }
+        }
+        Collections.shuffle(edges, random);
+
+        // Keep a random spanning tree so the network stays connected, and some of the other edges
+        int[] parent = new int[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            parent[i] = i;
+        }
+        for (int[] edge : edges) {
+            int a = findRoot(parent, edge[0]);
+            int b = findRoot(parent, edge[1]);
+            if (a != b) {
+                parent[a] = b;
+                connect(edge[0], edge[1]);
+            } else if (random.nextInt(100) < 35) {
+                connect(edge[0], edge[1]);
+            }
+        }
+    }
+
+    private static int findRoot(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private int addNode(int x, int z) {
+        int index = this.nodes.size();
+        BlockLocation location = new BlockLocation(WORLD, x, 64, z);
+        this.nodes.add(PathNode.getOrCreate(getName(index), location));
+        return index;
+    }
+
+    /**
+     * Connects two nodes in both directions, leaving each node towards the other
+     */
+    private void connect(int a, int b) {
+        PathNode nodeA = this.nodes.get(a);
+        PathNode nodeB = this.nodes.get(b);
+        int dx = nodeB.location.x - nodeA.location.x;
+        int dz = nodeB.location.z - nodeA.location.z;
+        connect(a, b, getDirection(dx, dz), getDirection(-dx, -dz));
+    }
+
+    /**
+     * Connects two nodes in both directions, leaving the nodes into the directions specified
+     */
+    private void connect(int a, int b, BlockFace directionAB, BlockFace directionBA) {
+        PathNode nodeA = this.nodes.get(a);
+        PathNode nodeB = this.nodes.get(b);
+        int distance = Math.max(1, Math.abs(nodeB.location.x - nodeA.location.x) + Math.abs(nodeB.location.z - nodeA.location.z));
+        nodeA.addNeighbour(nodeB, distance, directionAB);
+        nodeB.addNeighbour(nodeA, distance, directionBA);
+    }
+
+    private static BlockFace getDirection(int dx, int dz) {
+        if (Math.abs(dx) >= Math.abs(dz)) {
+            return dx >= 0 ? BlockFace.EAST : BlockFace.WEST;
+        } else {
+            return dz >= 0 ? BlockFace.SOUTH : BlockFace.NORTH;
+        }
+    }
+}
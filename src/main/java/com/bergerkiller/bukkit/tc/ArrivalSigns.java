@@ -9,6 +9,7 @@ import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.common.utils.ParseUtil;
 import com.bergerkiller.bukkit.sl.API.Variables;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
 import org.bukkit.ChatColor;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
@@ -92,7 +93,7 @@ public class ArrivalSigns {
         for (TimeSign sign : timerSigns.values()) {
             config.set(sign.name, sign.getDuration());
         }
-        config.save();
+        SaveQueue.submit(filename, new SaveQueue.ConfigurationSnapshot(config));
     }
 
     public static void deinit() {
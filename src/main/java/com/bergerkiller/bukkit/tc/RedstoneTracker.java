@@ -1,11 +1,13 @@
 package com.bergerkiller.bukkit.tc;
 
+import com.bergerkiller.bukkit.common.Task;
 import com.bergerkiller.bukkit.common.collections.BlockSet;
 import com.bergerkiller.bukkit.common.collections.CollectionBasics;
 import com.bergerkiller.bukkit.common.utils.*;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.signactions.SignAction;
 import com.bergerkiller.bukkit.tc.signactions.SignActionType;
+import org.bukkit.Chunk;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -18,9 +20,12 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockPhysicsEvent;
 import org.bukkit.event.block.BlockRedstoneEvent;
 import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.logging.Level;
 
 /**
@@ -65,8 +70,25 @@ public class RedstoneTracker implements Listener {
         }
     };
 
+    /* ============= Deferred initialization of the power state of signs in loaded chunks ============ */
+    private static final long MAX_INIT_TIME_PER_TICK = 5000000L; // Maximum time in nanoseconds spent per tick
+    private final LinkedHashSet<Chunk> pendingChunks = new LinkedHashSet<Chunk>();
+    private final Task initPowerLevelsTask = new Task(TrainCarts.plugin) {
+        @Override
+        public void run() {
+            final long startTime = System.nanoTime();
+            Iterator<Chunk> iter = pendingChunks.iterator();
+            while (iter.hasNext() && (System.nanoTime() - startTime) < MAX_INIT_TIME_PER_TICK) {
+                Chunk chunk = iter.next();
+                iter.remove();
+                initPowerLevels(chunk);
+            }
+        }
+    };
+
     public RedstoneTracker() {
         initPowerLevels();
+        initPowerLevelsTask.start(1, 1);
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
@@ -79,35 +101,61 @@ public class RedstoneTracker implements Listener {
 
     /**
      * Initializes the power levels of all signs on a server.
-     * Should be called only once, ever, as this method is quite slow.
+     * Rather than computing the power state of all signs right away, the loaded chunks
+     * are queued and their signs are initialized over several ticks.
      */
     public void initPowerLevels() {
         for (World world : WorldUtil.getWorlds()) {
-            try {
-                for (BlockState state : WorldUtil.getBlockStates(world)) {
-                    if (state instanceof Sign) {
-                        Block block = state.getBlock();
-                        LogicUtil.addOrRemove(poweredBlocks, block, PowerState.isSignPowered(block));
-                    }
-                }
-            } catch (Throwable t) {
-                TrainCarts.plugin.getLogger().log(Level.SEVERE, "Error while initializing sign power states in world " + world.getName(), t);
+            for (Chunk chunk : WorldUtil.getChunks(world)) {
+                pendingChunks.add(chunk);
             }
         }
     }
 
-    @EventHandler(priority = EventPriority.MONITOR)
-    public void onChunkLoad(ChunkLoadEvent event) {
-        // Set the initial power state of all signs within this Chunk
+    /**
+     * Initializes the power levels of all signs within a single chunk, if still loaded
+     *
+     * @param chunk to initialize
+     */
+    private void initPowerLevels(Chunk chunk) {
+        if (!chunk.isLoaded()) {
+            return;
+        }
         try {
-            for (BlockState state : WorldUtil.getBlockStates(event.getChunk())) {
+            for (BlockState state : WorldUtil.getBlockStates(chunk)) {
                 if (state instanceof Sign) {
                     Block block = state.getBlock();
                     LogicUtil.addOrRemove(poweredBlocks, block, PowerState.isSignPowered(block));
                 }
             }
         } catch (Throwable t) {
-            TrainCarts.plugin.getLogger().log(Level.SEVERE, "Error while initializing sign power states in chunk " + event.getChunk().getX() + "/" + event.getChunk().getZ(), t);
+            TrainCarts.plugin.getLogger().log(Level.SEVERE, "Error while initializing sign power states in chunk " + chunk.getX() + "/" + chunk.getZ(), t);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        // Set the initial power state of all signs within this Chunk at a later time
+        pendingChunks.add(event.getChunk());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        pendingChunks.remove(event.getChunk());
+    }
+
+    /**
+     * Initializes the power levels of the chunk of a sign if this has not happened yet.
+     * The sign has already changed power, so its stored state is set to the power it had before.
+     *
+     * @param signblock that changed power
+     * @param oldPowerState of the sign before the change
+     */
+    private void initPowerLevels(Block signblock, boolean oldPowerState) {
+        Chunk chunk = signblock.getChunk();
+        if (pendingChunks.remove(chunk)) {
+            initPowerLevels(chunk);
+            LogicUtil.addOrRemove(poweredBlocks, signblock, oldPowerState);
         }
     }
 
@@ -121,13 +169,16 @@ public class RedstoneTracker implements Listener {
             Block up = event.getBlock().getRelative(BlockFace.UP);
             Block down = event.getBlock().getRelative(BlockFace.DOWN);
             if (MaterialUtil.ISSIGN.get(up)) {
+                initPowerLevels(up, event.getOldCurrent() > 0);
                 updateRedstonePowerVerify(up, event.getNewCurrent() > 0);
             }
             if (MaterialUtil.ISSIGN.get(down)) {
+                initPowerLevels(down, event.getOldCurrent() > 0);
                 updateRedstonePowerVerify(down, event.getNewCurrent() > 0);
             }
             ignoreOutputLever(event.getBlock());
         } else if (MaterialUtil.ISSIGN.get(type)) {
+            initPowerLevels(event.getBlock(), event.getOldCurrent() > 0);
             updateRedstonePowerVerify(event.getBlock(), event.getNewCurrent() > 0);
         }
     }
@@ -177,6 +228,13 @@ public class RedstoneTracker implements Listener {
             return;
         }
 
+        // Initialize the power states of the chunk first, if this has not happened yet
+        // Without a known previous state, the sign keeps its current state and no change is seen
+        Chunk chunk = signblock.getChunk();
+        if (pendingChunks.remove(chunk)) {
+            initPowerLevels(chunk);
+        }
+
         // Is the event allowed?
         SignActionEvent info = new SignActionEvent(signblock);
         SignActionType type = info.getHeader().getRedstoneAction(newPowerState);
@@ -14,12 +14,15 @@ import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
+import com.bergerkiller.bukkit.tc.pathfinding.PathProvider;
 import com.bergerkiller.bukkit.tc.properties.CartProperties;
 import com.bergerkiller.bukkit.tc.properties.CartPropertiesStore;
 import com.bergerkiller.bukkit.tc.rails.type.RailType;
 import com.bergerkiller.bukkit.tc.rails.type.RailTypeRegular;
 import com.bergerkiller.bukkit.tc.signactions.SignAction;
+import com.bergerkiller.bukkit.tc.signactions.SignActionProfiler;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import com.bergerkiller.bukkit.tc.utils.TrackMap;
 import com.bergerkiller.mountiplex.reflection.SafeMethod;
 import com.bergerkiller.reflection.net.minecraft.server.NMSEntity;
@@ -92,6 +95,11 @@ public class TCListener implements Listener {
 
     @EventHandler(priority = EventPriority.LOWEST, ignoreCancelled = true)
     public void onChunkUnloadLow(ChunkUnloadEvent event) {
+        // Chunks kept loaded by (or recently by) trains and signs
+        if (ChunkKeepAlive.isKeptLoaded(event.getWorld(), event.getChunk().getX(), event.getChunk().getZ())) {
+            event.setCancelled(true);
+            return;
+        }
         synchronized (this.expectUnload) {
             this.expectUnload.clear();
             for (MinecartGroup mg : MinecartGroup.getGroupsUnsafe()) {
@@ -126,8 +134,6 @@ public class TCListener implements Listener {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onChunkUnload(ChunkUnloadEvent event) {
-        // This chunk is still referenced, ensure that it is really gone
-        OfflineGroupManager.lastUnloadChunk = MathUtil.longHashToLong(event.getChunk().getX(), event.getChunk().getZ());
         // Unload groups
         synchronized (this.expectUnload) {
             for (MinecartGroup mg : this.expectUnload) {
@@ -137,12 +143,13 @@ public class TCListener implements Listener {
             }
         }
         OfflineGroupManager.unloadChunk(event.getChunk());
-        OfflineGroupManager.lastUnloadChunk = null;
+        SignActionProfiler.unloadChunk(event.getChunk());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onChunkLoad(ChunkLoadEvent event) {
         OfflineGroupManager.loadChunk(event.getChunk());
+        PathProvider.onChunkLoad(event.getChunk());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
@@ -158,6 +165,7 @@ public class TCListener implements Listener {
                 group.unload();
             }
         }
+        ChunkKeepAlive.clear(event.getWorld());
     }
 
     @EventHandler(priority = EventPriority.LOWEST)
@@ -595,6 +603,7 @@ public class TCListener implements Listener {
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPlace(final BlockPlaceEvent event) {
         if (MaterialUtil.ISRAILS.get(event.getBlockPlaced())) {
+            PathNode.invalidateTrack(event.getBlockPlaced());
             CommonUtil.nextTick(new Runnable() {
                 public void run() {
                     updateRails(event.getBlockPlaced());
@@ -707,7 +716,8 @@ public class TCListener implements Listener {
         if (mm != null) {
             mm.getGroup().getBlockTracker().updatePosition();
         }
-        // Remove path node from path finding
+        // Remove path node from path finding and discover the track around it again
         PathNode.remove(railsBlock);
+        PathNode.invalidateTrack(railsBlock);
     }
 }
@@ -20,9 +20,12 @@ import com.bergerkiller.bukkit.tc.properties.CartPropertiesStore;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
 import com.bergerkiller.bukkit.tc.signactions.SignAction;
 import com.bergerkiller.bukkit.tc.signactions.SignActionDetector;
+import com.bergerkiller.bukkit.tc.signactions.SignActionProfiler;
 import com.bergerkiller.bukkit.tc.signactions.SignActionSpawn;
 import com.bergerkiller.bukkit.tc.statements.Statement;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import com.bergerkiller.mountiplex.conversion.Conversion;
 
 import org.bukkit.Material;
@@ -63,6 +66,9 @@ public class TrainCarts extends PluginBase {
     public static boolean useCoalFromStorageCart;
     public static boolean setOwnerOnPlacement;
     public static boolean keepChunksLoadedOnlyWhenMoving;
+    public static boolean offlineTrainMovement;
+    public static boolean proxyUnseenTrains;
+    public static double proxyViewDistance;
     public static boolean playSoundAtStation;
     public static int maxDetectorLength;
     public static int maxMinecartStackSize;
@@ -79,6 +85,8 @@ public class TrainCarts extends PluginBase {
     public static boolean allMinecartsAreTrainCarts;
     public static boolean useNetworkSynchronizer;
     public static boolean allowVerticalPitch;
+    public static boolean fireVehicleUpdateEvent;
+    public static boolean fireVehicleMoveEvent;
     public static boolean enableCeilingBlockCollision = true; // whether to allow blocks above the minecart to collide
     public static int collisionReEnterDelay = 100; // Delay before letting mobs/player enter again
     public static boolean EssentialsEnabled = false;
@@ -312,6 +320,16 @@ public class TrainCarts extends PluginBase {
         config.setHeader("keepChunksLoadedOnlyWhenMoving", "\nWhether or not chunks are only kept loaded when the train is moving");
         keepChunksLoadedOnlyWhenMoving = config.get("keepChunksLoadedOnlyWhenMoving", false);
 
+        config.setHeader("offlineTrainMovement", "\nWhether trains with a destination keep moving along their route while their chunks are unloaded");
+        config.addHeader("offlineTrainMovement", "They are restored where they moved to once the chunks there are loaded, for example when a player is nearby");
+        offlineTrainMovement = config.get("offlineTrainMovement", false);
+
+        config.setHeader("proxyUnseenTrains", "\nWhether trains with a destination that no player can see stop ticking their minecarts");
+        config.addHeader("proxyUnseenTrains", "They keep moving along their route, and are restored where they moved to once a player comes near");
+        config.setHeader("proxyViewDistance", "The distance in blocks from a player within which trains are seen");
+        proxyUnseenTrains = config.get("proxyUnseenTrains", false);
+        proxyViewDistance = config.get("proxyViewDistance", 128.0);
+
         config.setHeader("enableCeilingBlockCollision", "\nWhether to enable or cancel collisions with blocks above minecarts");
         config.addHeader("enableCeilingBlockCollision", "Some constructions depend on these block collisions to block minecarts");
         config.addHeader("enableCeilingBlockCollision", "If these collisions are unwanted, they can be turned off here");
@@ -322,6 +340,21 @@ public class TrainCarts extends PluginBase {
         config.addHeader("useNetworkSynchronizer", "With this disabled, no smoothing is applied. Only disable it if it causes problems/incompatibility");
         useNetworkSynchronizer = config.get("useNetworkSynchronizer", true);
 
+        config.setHeader("vehicleEvents", "\nWhether the vanilla vehicle events are fired for TrainCarts minecarts");
+        config.addHeader("vehicleEvents", "These events are fired for every minecart every tick, which costs performance");
+        config.addHeader("vehicleEvents", "Only disable them if no other plugins depend on them for TrainCarts minecarts");
+        fireVehicleUpdateEvent = config.get("vehicleEvents.VehicleUpdateEvent", true);
+        fireVehicleMoveEvent = config.get("vehicleEvents.VehicleMoveEvent", true);
+
+        config.setHeader("signProfiler", "\nSettings for measuring how often and how long signs are executed");
+        config.addHeader("signProfiler", "The statistics can be viewed using /train signstats");
+        config.setHeader("signProfiler.enabled", "Whether sign executions are measured from startup");
+        config.setHeader("signProfiler.dumpInterval", "Interval in seconds at which statistics are written to signstats.csv (0 = never)");
+        config.setHeader("signProfiler.topLocations", "The amount of sign locations that took the most time to display");
+        SignActionProfiler.init(config.get("signProfiler.enabled", false),
+                config.get("signProfiler.dumpInterval", 0),
+                config.get("signProfiler.topLocations", 10));
+
         config.setHeader("maxDetectorLength", "\nThe maximum length a detector region (between two detectors) can be");
         maxDetectorLength = config.get("maxDetectorLength", 2000);
 
@@ -525,15 +558,18 @@ public class TrainCarts extends PluginBase {
         //Load properties
         TrainProperties.load();
 
+        // Start the path finding task, loading destinations schedules unfinished nodes
+        PathProvider.init();
+
+        //Load destinations, before the groups which can be moving along routes between them
+        PathNode.init(getDataFolder() + File.separator + "destinations.dat");
+
         //Load groups
         OfflineGroupManager.init(getDataFolder() + File.separator + "trains.groupdata");
 
         //Convert Minecarts
         MinecartMemberStore.convertAll();
 
-        //Load destinations
-        PathNode.init(getDataFolder() + File.separator + "destinations.dat");
-
         //Load arrival times
         ArrivalSigns.init(getDataFolder() + File.separator + "arrivaltimes.txt");
 
@@ -550,9 +586,6 @@ public class TrainCarts extends PluginBase {
         TrainCarts.plugin.log(Level.INFO, "Restoring trains and loading nearby chunks...");
         OfflineGroupManager.refresh();
 
-        // Start the path finding task
-        PathProvider.init();
-
         // Hackish fix the chunk persistence failing
         fixGroupTickTask = new TrainUpdateTask(this).start(1, 1);
 
@@ -626,15 +659,19 @@ public class TrainCarts extends PluginBase {
         }
 
         save();
+        SaveQueue.waitForSaves();
 
         // Deinit classes
         PathNode.deinit();
+        DetectorRegion.deinit();
         ArrivalSigns.deinit();
         SignActionSpawn.deinit();
         Statement.deinit();
         SignAction.deinit();
+        SignActionProfiler.deinit();
         ItemAnimation.deinit();
         OfflineGroupManager.deinit();
+        ChunkKeepAlive.deinit();
         PathProvider.deinit();
     }
 
@@ -668,6 +705,10 @@ public class TrainCarts extends PluginBase {
                 tickUpdateNow--;
                 MinecartGroupStore.doFixedTick(tickUpdateDivider != 1);
             }
+            MinecartGroupStore.updateProxies();
+            OfflineGroupManager.updateMoving();
+            OfflineGroupManager.restoreQueued();
+            ChunkKeepAlive.tick();
         }
     }
 }
@@ -2,29 +2,33 @@ package com.bergerkiller.bukkit.tc.actions;
 
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
-import com.bergerkiller.bukkit.tc.pathfinding.PathConnection;
 import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
 import com.bergerkiller.bukkit.tc.pathfinding.PathProvider;
+import com.bergerkiller.bukkit.tc.pathfinding.PathRoute;
+import com.bergerkiller.bukkit.tc.properties.IProperties;
 import org.bukkit.ChatColor;
+import org.bukkit.block.BlockFace;
 import org.bukkit.entity.Player;
 
 import java.util.HashSet;
 
 public class GroupActionWaitPathFinding extends GroupActionWaitForever {
     private final SignActionEvent info;
+    private final IProperties prop;
     private final PathNode from;
     private final String destination;
     private int failCounter = 0;
 
-    public GroupActionWaitPathFinding(SignActionEvent info, PathNode from, String destination) {
+    public GroupActionWaitPathFinding(SignActionEvent info, IProperties prop, PathNode from, String destination) {
         this.info = info;
+        this.prop = prop;
         this.from = from;
         this.destination = destination;
     }
 
     @Override
     public boolean update() {
-        if (PathProvider.isProcessing()) {
+        if (!PathProvider.getPendingNodes(this.from, this.destination).isEmpty()) {
             if (this.failCounter++ == 20) {
                 HashSet<Player> receivers = new HashSet<>();
                 for (MinecartMember<?> member : this.getGroup()) {
@@ -42,9 +46,9 @@ public class GroupActionWaitPathFinding extends GroupActionWaitForever {
             return super.update();
         } else {
             // Switch the rails to the right direction
-            PathConnection conn = this.from.findConnection(this.destination);
-            if (conn != null) {
-                this.info.setRailsTo(conn.direction);
+            BlockFace direction = PathRoute.getDirection(this.prop, this.from, this.destination);
+            if (direction != null) {
+                this.info.setRailsTo(direction);
             }
             return true;
         }
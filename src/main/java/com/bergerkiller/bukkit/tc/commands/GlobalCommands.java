@@ -13,6 +13,7 @@ import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
 import com.bergerkiller.bukkit.tc.properties.CartPropertiesStore;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+import com.bergerkiller.bukkit.tc.signactions.SignActionProfiler;
 import com.bergerkiller.bukkit.tc.statements.Statement;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
 
@@ -97,7 +98,7 @@ public class GlobalCommands {
         } else if (args[0].equals("saveall")) {
             Permission.COMMAND_SAVEALL.handle(sender);
             TrainCarts.plugin.save();
-            sender.sendMessage(ChatColor.YELLOW + "TrainCarts' information has been saved to file.");
+            sender.sendMessage(ChatColor.YELLOW + "TrainCarts' information is being saved to file.");
             return true;
         } else if (args[0].equals("fixbugged")) {
             Permission.COMMAND_FIXBUGGED.handle(sender);
@@ -166,6 +167,25 @@ public class GlobalCommands {
             }
             list((Player) sender, "");
             return true;
+        } else if (args[0].equals("signstats")) {
+            Permission.COMMAND_SIGNSTATS.handle(sender);
+            String action = (args.length >= 2) ? args[1].toLowerCase() : "";
+            if (action.equals("enable") || action.equals("start")) {
+                SignActionProfiler.setEnabled(true);
+                sender.sendMessage(ChatColor.YELLOW + "Sign execution statistics are now " + ChatColor.GREEN + "being measured");
+            } else if (action.equals("disable") || action.equals("stop")) {
+                SignActionProfiler.setEnabled(false);
+                sender.sendMessage(ChatColor.YELLOW + "Sign execution statistics are " + ChatColor.RED + "no longer measured");
+            } else if (action.equals("reset") || action.equals("clear")) {
+                SignActionProfiler.reset();
+                sender.sendMessage(ChatColor.YELLOW + "Sign execution statistics have been reset");
+            } else if (action.equals("dump") || action.equals("save")) {
+                SignActionProfiler.dump(SignActionProfiler.getDumpFile());
+                sender.sendMessage(ChatColor.YELLOW + "Sign execution statistics have been written to " + SignActionProfiler.getDumpFile().getName());
+            } else {
+                SignActionProfiler.show(sender);
+            }
+            return true;
         } else if (args[0].equals("tick")) {
             Permission.COMMAND_CHANGETICK.handle(sender);
             boolean disableTicks = false;
@@ -1,7 +1,6 @@
 package com.bergerkiller.bukkit.tc.controller;
 
 import com.bergerkiller.bukkit.common.ToggledState;
-import com.bergerkiller.bukkit.common.bases.IntVector2;
 import com.bergerkiller.bukkit.common.bases.IntVector3;
 import com.bergerkiller.bukkit.common.controller.EntityNetworkController;
 import com.bergerkiller.bukkit.common.entity.type.CommonMinecart;
@@ -9,18 +8,23 @@ import com.bergerkiller.bukkit.common.inventory.ItemParser;
 import com.bergerkiller.bukkit.common.inventory.MergedInventory;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet.LongIterator;
 import com.bergerkiller.bukkit.tc.exception.GroupUnloadedException;
 import com.bergerkiller.bukkit.tc.exception.MemberMissingException;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.components.ActionTrackerGroup;
 import com.bergerkiller.bukkit.tc.controller.components.BlockTrackerGroup;
+import com.bergerkiller.bukkit.tc.controller.components.ChunkPreloader;
 import com.bergerkiller.bukkit.tc.controller.type.MinecartMemberChest;
 import com.bergerkiller.bukkit.tc.controller.type.MinecartMemberFurnace;
 import com.bergerkiller.bukkit.tc.events.*;
 import com.bergerkiller.bukkit.tc.properties.IPropertiesHolder;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
 import com.bergerkiller.bukkit.tc.properties.TrainPropertiesStore;
+import com.bergerkiller.bukkit.tc.storage.OfflineGroup;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import com.bergerkiller.bukkit.tc.utils.TrackWalkIterator;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
@@ -29,6 +33,7 @@ import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.EntityType;
+import org.bukkit.entity.Player;
 import org.bukkit.inventory.Inventory;
 
 import java.util.*;
@@ -36,12 +41,13 @@ import java.util.logging.Level;
 
 public class MinecartGroup extends MinecartGroupStore implements IPropertiesHolder {
     private static final long serialVersionUID = 3;
-    private static final HashSet<IntVector2> previousChunksBuffer = new HashSet<>(50);
-    private static final HashSet<IntVector2> newChunksBuffer = new HashSet<>(50);
+    private static final LongHashSet newChunksBuffer = new LongHashSet(50);
     protected final ToggledState networkInvalid = new ToggledState();
     protected final ToggledState ticked = new ToggledState();
     private final BlockTrackerGroup blockTracker = new BlockTrackerGroup(this);
     private final ActionTrackerGroup actionTracker = new ActionTrackerGroup(this);
+    private final ChunkKeepAlive.Ticket chunkTicket = new ChunkKeepAlive.Ticket();
+    private final ChunkPreloader chunkPreloader = new ChunkPreloader(this);
     protected long lastSync = Long.MIN_VALUE;
     private TrainProperties prop = null;
     private boolean breakPhysics = false;
@@ -333,6 +339,8 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
             return; // Already removed
         }
         GroupRemoveEvent.call(this);
+        this.chunkTicket.release();
+        this.chunkPreloader.release();
         this.clear();
         if (this.prop != null) {
             TrainPropertiesStore.remove(this.prop.getTrainName());
@@ -349,6 +357,47 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
     }
 
     public void unload() {
+        this.unload(null);
+    }
+
+    /**
+     * Checks whether this group can be replaced by a proxy. This is possible when it is moving
+     * towards a destination, and no player is near enough to see any of its carts.
+     *
+     * @return True if this group can be replaced by a proxy
+     */
+    public boolean canProxy() {
+        if (this.isEmpty() || !this.isMoving() || this.getActions().hasAction() || !OfflineGroupManager.canMoveOffline(this)) {
+            return false;
+        }
+        final double distanceSquared = TrainCarts.proxyViewDistance * TrainCarts.proxyViewDistance;
+        for (Player player : this.getWorld().getPlayers()) {
+            for (MinecartMember<?> member : this) {
+                if (member.getEntity().loc.distanceSquared(player) <= distanceSquared) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Replaces this group by a proxy that moves towards the destination along the route, without
+     * ticking the carts. The group is restored where the proxy moved to once a player comes near.
+     * Nothing happens when no route to the destination can be found.
+     *
+     * @return True if this group was replaced by a proxy, False if not
+     */
+    public boolean unloadAsProxy() {
+        OfflineGroup proxy = OfflineGroupManager.createProxy(this);
+        if (proxy == null) {
+            return false;
+        }
+        this.unload(proxy);
+        return true;
+    }
+
+    private void unload(OfflineGroup stored) {
         // Undo partial-unloading before calling the event
         for (MinecartMember<?> member : this) {
             member.group = this;
@@ -362,10 +411,12 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
         getBlockTracker().unload();
 
         // Store the group offline
-        OfflineGroupManager.storeGroup(this);
+        OfflineGroupManager.storeGroup(this, stored);
 
         // Unload
         this.stop(true);
+        this.chunkTicket.release();
+        this.chunkPreloader.release();
         groups.remove(this);
         for (MinecartMember<?> member : this) {
             member.group = null;
@@ -982,48 +1033,30 @@ public class MinecartGroup extends MinecartGroupStore implements IPropertiesHold
 
             // Check whether chunks are loaded, and load them if needed
             // If chunks are not kept loaded, the member will unload the entire train
-            previousChunksBuffer.clear();
             newChunksBuffer.clear();
             for (MinecartMember<?> mm : this) {
-                mm.updateChunks(previousChunksBuffer, newChunksBuffer);
+                mm.updateChunks(newChunksBuffer);
             }
-            int cx, cz;
-            IntVector2 chunk;
             final World world = getWorld();
-            Iterator<IntVector2> iter;
             if (this.canUnload()) {
+                // Chunks no longer kept loaded by this train stay loaded a little while longer
+                this.chunkTicket.release();
+                this.chunkPreloader.release();
+
                 // Check whether the new chunks are unloaded
-                iter = newChunksBuffer.iterator();
+                LongIterator iter = newChunksBuffer.longIterator();
                 while (iter.hasNext()) {
-                    chunk = iter.next();
-                    cx = chunk.x;
-                    cz = chunk.z;
-                    if (!world.isChunkLoaded(cx, cz)) {
+                    long chunk = iter.next();
+                    if (!world.isChunkLoaded(MathUtil.longHashMsw(chunk), MathUtil.longHashLsw(chunk))) {
                         this.unload();
                         throw new GroupUnloadedException();
                     }
                 }
             } else {
-                // Mark previous chunks for unload
-                iter = previousChunksBuffer.iterator();
-                while (iter.hasNext()) {
-                    chunk = iter.next();
-                    if (!newChunksBuffer.contains(chunk)) {
-                        cx = chunk.x;
-                        cz = chunk.z;
-                        world.unloadChunkRequest(cx, cz);
-                    }
-                }
-                // Load the new chunks
-                iter = newChunksBuffer.iterator();
-                while (iter.hasNext()) {
-                    chunk = iter.next();
-                    if (!previousChunksBuffer.contains(chunk)) {
-                        cx = chunk.x;
-                        cz = chunk.z;
-                        world.getChunkAt(cx, cz);
-                    }
-                }
+                // Load the chunks entering the area, and release the chunks leaving it
+                // Chunks further ahead are requested early, so these are usually already loaded
+                this.chunkTicket.update(world, newChunksBuffer);
+                this.chunkPreloader.update();
             }
             return true;
         } catch (MemberMissingException ex) {
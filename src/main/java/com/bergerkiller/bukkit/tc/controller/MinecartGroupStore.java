@@ -17,6 +17,12 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
     private static final long serialVersionUID = 1;
     protected static HashSet<MinecartGroup> groups = new HashSet<>();
     private static List<MinecartGroup> groupTickBuffer = new ArrayList<>(5);
+    /**
+     * Interval in ticks at which groups are checked for whether they can be replaced by a proxy
+     */
+    private static final int PROXY_CHECK_INTERVAL = 20;
+    private static int proxyCheckCtr = 0;
+    private static int physicsTicks = 0;
 
     /**
      * Called onPhysics for all Minecart Groups who didn't get ticked in the previous run
@@ -25,6 +31,7 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
      * @param disableMinecartTick whether to disable tick updates done by minecarts themselves
      */
     public static void doFixedTick(boolean disableMinecartTick) {
+        physicsTicks++;
         groupTickBuffer.clear();
         groupTickBuffer.addAll(groups);
         try {
@@ -43,6 +50,38 @@ public class MinecartGroupStore extends ArrayList<MinecartMember<?>> {
         }
     }
 
+    /**
+     * Gets the amount of physics ticks performed so far. This runs slower than the server
+     * ticks when the tick update divider is set.
+     *
+     * @return physics tick count
+     */
+    public static int getPhysicsTicks() {
+        return physicsTicks;
+    }
+
+    /**
+     * Replaces the groups no player can see by proxies, if enabled. Called every tick,
+     * the groups are checked once every {@link #PROXY_CHECK_INTERVAL} ticks.
+     */
+    public static void updateProxies() {
+        if (!TrainCarts.proxyUnseenTrains || ++proxyCheckCtr < PROXY_CHECK_INTERVAL) {
+            return;
+        }
+        proxyCheckCtr = 0;
+        groupTickBuffer.clear();
+        groupTickBuffer.addAll(groups);
+        try {
+            for (MinecartGroup group : groupTickBuffer) {
+                if (group.canProxy()) {
+                    group.unloadAsProxy();
+                }
+            }
+        } catch (Throwable t) {
+            TrainCarts.plugin.handle(t);
+        }
+    }
+
     public static MinecartGroup create() {
         MinecartGroup g = new MinecartGroup();
         groups.add(g);
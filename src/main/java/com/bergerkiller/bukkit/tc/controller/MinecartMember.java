@@ -1,19 +1,20 @@
 package com.bergerkiller.bukkit.tc.controller;
 
 import com.bergerkiller.bukkit.common.ToggledState;
-import com.bergerkiller.bukkit.common.bases.IntVector2;
 import com.bergerkiller.bukkit.common.bases.IntVector3;
 import com.bergerkiller.bukkit.common.controller.EntityController;
 import com.bergerkiller.bukkit.common.entity.CommonEntity;
 import com.bergerkiller.bukkit.common.entity.type.CommonMinecart;
 import com.bergerkiller.bukkit.common.utils.*;
 import com.bergerkiller.bukkit.common.wrappers.DamageSource;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet;
 import com.bergerkiller.bukkit.common.wrappers.MoveType;
 import com.bergerkiller.bukkit.tc.*;
 import com.bergerkiller.bukkit.tc.controller.components.ActionTrackerMember;
 import com.bergerkiller.bukkit.tc.controller.components.BlockTrackerMember;
 import com.bergerkiller.bukkit.tc.controller.components.RailTracker;
 import com.bergerkiller.bukkit.tc.controller.components.SoundLoop;
+import com.bergerkiller.bukkit.tc.events.EventDispatcher;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.exception.GroupUnloadedException;
 import com.bergerkiller.bukkit.tc.exception.MemberMissingException;
@@ -77,7 +78,7 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
     private int collisionEnterTimer = 0;
     private CartProperties properties;
     private Map<UUID, AtomicInteger> collisionIgnoreTimes = new HashMap<>();
-    private ChunkArea lastChunks, currentChunks;
+    private ChunkArea currentChunks;
 
     public static boolean isTrackConnected(MinecartMember<?> m1, MinecartMember<?> m2) {
         //Can the minecart reach the other?
@@ -101,8 +102,7 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
         super.onAttached();
         this.railTracker.onAttached();
         this.soundLoop = new SoundLoop<MinecartMember<?>>(this);
-        this.lastChunks = new ChunkArea(entity.loc.x.chunk(), entity.loc.z.chunk());
-        this.currentChunks = new ChunkArea(lastChunks);
+        this.currentChunks = new ChunkArea(entity.loc.x.chunk(), entity.loc.z.chunk());
         this.updateDirectionSelf();
     }
 
@@ -221,11 +221,14 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
         return world == entity.getWorld() && Math.abs(cx - entity.loc.x.chunk()) <= 2 && Math.abs(cz - entity.loc.z.chunk()) <= 2;
     }
 
-    protected void updateChunks(Set<IntVector2> previousChunks, Set<IntVector2> newChunks) {
-        previousChunks.addAll(Arrays.asList(this.lastChunks.getChunks()));
-        newChunks.addAll(Arrays.asList(this.currentChunks.getChunks()));
-        this.lastChunks.update(this.currentChunks);
+    /**
+     * Updates the 5x5 chunk area around this Minecart and adds its chunks to a set
+     *
+     * @param chunks to add the chunk keys to
+     */
+    protected void updateChunks(LongHashSet chunks) {
         this.currentChunks.update(entity.loc.x.chunk(), entity.loc.z.chunk());
+        this.currentChunks.addChunksTo(chunks);
     }
 
     public boolean isSingle() {
@@ -1231,12 +1234,18 @@ public abstract class MinecartMember<T extends CommonMinecart<?>> extends Entity
         Location from = entity.getLastLocation();
         Location to = entity.getLocation();
         Vehicle vehicle = entity.getEntity();
-        CommonUtil.callEvent(new VehicleUpdateEvent(vehicle));
+        if (TrainCarts.fireVehicleUpdateEvent && EventDispatcher.hasListeners(VehicleUpdateEvent.getHandlerList())) {
+            CommonUtil.callEvent(new VehicleUpdateEvent(vehicle));
+        }
         if (!from.equals(to)) {
             // Execute move events
-            CommonUtil.callEvent(new VehicleMoveEvent(vehicle, from, to));
+            if (TrainCarts.fireVehicleMoveEvent && EventDispatcher.hasListeners(VehicleMoveEvent.getHandlerList())) {
+                CommonUtil.callEvent(new VehicleMoveEvent(vehicle, from, to));
+            }
             for (org.bukkit.block.Block sign : this.getBlockTracker().getActiveSigns()) {
-                SignAction.executeAll(new SignActionEvent(sign, this), SignActionType.MEMBER_MOVE);
+                if (this.getBlockTracker().isSubscribed(sign, SignActionType.MEMBER_MOVE)) {
+                    SignAction.executeAll(new SignActionEvent(sign, this), SignActionType.MEMBER_MOVE);
+                }
             }
         }
 
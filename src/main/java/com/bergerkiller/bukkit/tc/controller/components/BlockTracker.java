@@ -2,6 +2,9 @@ package com.bergerkiller.bukkit.tc.controller.components;
 
 import com.bergerkiller.bukkit.common.ToggledState;
 import com.bergerkiller.bukkit.tc.detector.DetectorRegion;
+import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.signactions.SignAction;
+import com.bergerkiller.bukkit.tc.signactions.SignActionType;
 import org.bukkit.block.Block;
 
 import java.util.*;
@@ -12,6 +15,7 @@ import java.util.*;
 public abstract class BlockTracker {
     protected static final Set<Block> blockBuffer = new HashSet<>();
     protected final Set<Block> activeSigns = new LinkedHashSet<>();
+    protected final Map<Block, SignAction> activeSignActions = new HashMap<>();
     protected final List<DetectorRegion> detectorRegions = new ArrayList<>(0);
     protected final ToggledState needsUpdate = new ToggledState();
 
@@ -27,6 +31,20 @@ public abstract class BlockTracker {
         return signblock != null && activeSigns.contains(signblock);
     }
 
+    /**
+     * Checks whether an active sign wants to receive events of a certain action type.
+     * Signs that are not handled by a registered sign action are always subscribed,
+     * as other plugins may be handling them through the SignActionEvent.
+     *
+     * @param signblock of the active sign
+     * @param type of action to check
+     * @return True if the event should be fired for the sign, False if not
+     */
+    public boolean isSubscribed(Block signblock, SignActionType type) {
+        SignAction action = activeSignActions.get(signblock);
+        return action == null || action.isSubscribed(type);
+    }
+
     public boolean hasSigns() {
         return !this.activeSigns.isEmpty();
     }
@@ -40,6 +58,7 @@ public abstract class BlockTracker {
                 onSignChange(signBlock, false);
             }
             activeSigns.clear();
+            activeSignActions.clear();
         }
     }
 
@@ -81,6 +100,22 @@ public abstract class BlockTracker {
 
     protected abstract void onSignChange(Block signblock, boolean active);
 
+    /**
+     * Executes the enter or leave event of a sign, and keeps track of the sign action
+     * that handles the sign while it is active
+     *
+     * @param event to execute, with the enter or leave action type set
+     * @param active whether the sign became active (enter) or inactive (leave)
+     */
+    protected void executeSignChange(SignActionEvent event, boolean active) {
+        if (active) {
+            activeSignActions.put(event.getBlock(), SignAction.getSignAction(event));
+        } else {
+            activeSignActions.remove(event.getBlock());
+        }
+        SignAction.executeAll(event);
+    }
+
     protected void updateActiveSigns(Collection<Block> newActiveSigns) {
         if (newActiveSigns.isEmpty()) {
             // Only remove old signs
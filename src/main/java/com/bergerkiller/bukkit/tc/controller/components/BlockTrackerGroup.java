@@ -24,6 +24,7 @@ import java.util.Map.Entry;
  */
 public class BlockTrackerGroup extends BlockTracker {
     private static final Set<Block> groupSignBuffer = new LinkedHashSet<>();
+    private static final Map<Block, Set<BlockTrackerGroup>> signTrackers = new HashMap<>();
     private final MinecartGroup owner;
     private final Map<IntVector3, MinecartMember<?>> blockSpace = new LinkedHashMap<>();
     private final ToggledState needsPositionUpdate = new ToggledState(true);
@@ -41,11 +42,58 @@ public class BlockTrackerGroup extends BlockTracker {
         return owner;
     }
 
+    /**
+     * Gets all the groups that currently have a sign active
+     *
+     * @param signBlock of the sign
+     * @return list of groups on top of the sign
+     */
+    public static List<MinecartGroup> getGroupsOnSign(Block signBlock) {
+        Set<BlockTrackerGroup> trackers = signTrackers.get(signBlock);
+        if (trackers == null) {
+            return Collections.emptyList();
+        }
+        List<MinecartGroup> groups = new ArrayList<>(trackers.size());
+        for (BlockTrackerGroup tracker : trackers) {
+            groups.add(tracker.getOwner());
+        }
+        return groups;
+    }
+
+    /**
+     * Removes a sign from all the groups that currently have it active.
+     * Only the groups that have the sign active are visited.
+     *
+     * @param signBlock of the sign to remove
+     */
+    public static void removeSignFromAll(Block signBlock) {
+        Set<BlockTrackerGroup> trackers = signTrackers.get(signBlock);
+        if (trackers != null) {
+            for (BlockTrackerGroup tracker : new ArrayList<>(trackers)) {
+                tracker.removeSign(signBlock);
+            }
+        }
+    }
+
+    private void setSignTracked(Block signblock, boolean tracked) {
+        Set<BlockTrackerGroup> trackers = signTrackers.get(signblock);
+        if (tracked) {
+            if (trackers == null) {
+                trackers = new HashSet<>(2);
+                signTrackers.put(signblock, trackers);
+            }
+            trackers.add(this);
+        } else if (trackers != null && trackers.remove(this) && trackers.isEmpty()) {
+            signTrackers.remove(signblock);
+        }
+    }
+
     @Override
     protected void onSignChange(Block signblock, boolean active) {
+        setSignTracked(signblock, active);
         SignActionEvent event = new SignActionEvent(signblock, owner);
         event.setAction(active ? SignActionType.GROUP_ENTER : SignActionType.GROUP_LEAVE);
-        SignAction.executeAll(event);
+        executeSignChange(event, active);
     }
 
     /**
@@ -82,6 +130,10 @@ public class BlockTrackerGroup extends BlockTracker {
 
     @Override
     public void unload() {
+        // The unloaded group no longer tracks its signs
+        for (Block signBlock : activeSigns) {
+            setSignTracked(signBlock, false);
+        }
         // Unload in detector regions
         if (!this.detectorRegions.isEmpty()) {
             for (DetectorRegion region : this.detectorRegions) {
@@ -246,7 +298,9 @@ public class BlockTrackerGroup extends BlockTracker {
         // Perform routine update events
         if (needsUpdate.clear()) {
             for (Block signBlock : getActiveSigns()) {
-                SignAction.executeAll(new SignActionEvent(signBlock, owner), SignActionType.GROUP_UPDATE);
+                if (isSubscribed(signBlock, SignActionType.GROUP_UPDATE)) {
+                    SignAction.executeAll(new SignActionEvent(signBlock, owner), SignActionType.GROUP_UPDATE);
+                }
             }
             for (DetectorRegion region : getActiveDetectorRegions()) {
                 region.update(owner);
@@ -256,7 +310,9 @@ public class BlockTrackerGroup extends BlockTracker {
                 BlockTrackerMember tracker = member.getBlockTracker();
                 if (tracker.needsUpdate.clear()) {
                     for (Block signBlock : tracker.getActiveSigns()) {
-                        SignAction.executeAll(new SignActionEvent(signBlock, tracker.getOwner()), SignActionType.MEMBER_UPDATE);
+                        if (tracker.isSubscribed(signBlock, SignActionType.MEMBER_UPDATE)) {
+                            SignAction.executeAll(new SignActionEvent(signBlock, tracker.getOwner()), SignActionType.MEMBER_UPDATE);
+                        }
                     }
                     for (DetectorRegion region : tracker.getActiveDetectorRegions()) {
                         region.update(tracker.getOwner());
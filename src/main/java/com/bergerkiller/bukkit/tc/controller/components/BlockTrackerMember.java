@@ -4,7 +4,6 @@ import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.detector.DetectorRegion;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
-import com.bergerkiller.bukkit.tc.signactions.SignAction;
 import com.bergerkiller.bukkit.tc.signactions.SignActionType;
 import org.bukkit.block.Block;
 
@@ -52,7 +51,7 @@ public class BlockTrackerMember extends BlockTracker {
     protected void onSignChange(Block signblock, boolean active) {
         SignActionEvent event = new SignActionEvent(signblock, owner);
         event.setAction(active ? SignActionType.MEMBER_ENTER : SignActionType.MEMBER_LEAVE);
-        SignAction.executeAll(event);
+        executeSignChange(event, active);
     }
 
     @Override
@@ -0,0 +1,145 @@
+package com.bergerkiller.bukkit.tc.controller.components;
+
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.utils.ChunkArea;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
+import com.bergerkiller.bukkit.tc.utils.TrackIterator;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+/**
+ * Requests the chunks along the track ahead of a MinecartGroup that keeps chunks loaded,
+ * a few seconds before the group reaches them. The chunks are loaded over multiple ticks
+ * by {@link ChunkKeepAlive}, so the group itself rarely has to load a chunk while moving.
+ * Chunks no longer on the track ahead, for example after taking a junction, are released again.
+ */
+public class ChunkPreloader {
+    /**
+     * Amount of ticks of movement ahead of the group for which chunks are requested
+     */
+    public static final int PRELOAD_TICKS = 60;
+    /**
+     * Maximum amount of track blocks walked ahead of the group
+     */
+    public static final int MAX_DISTANCE = 512;
+    /**
+     * Minimum speed of the group before chunks are requested
+     */
+    public static final double MIN_FORCE = 0.01;
+    private static final LongHashSet newChunksBuffer = new LongHashSet(100);
+    private final MinecartGroup owner;
+    private final ChunkKeepAlive.Ticket ticket = new ChunkKeepAlive.Ticket();
+    private Block lastBlock = null;
+    private BlockFace lastDirection = null;
+    private int lastDistance = 0;
+    private boolean blocked = false;
+    private int blockedX, blockedZ;
+
+    public ChunkPreloader(MinecartGroup owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Gets the owner of this Chunk Preloader
+     *
+     * @return the Owner
+     */
+    public MinecartGroup getOwner() {
+        return this.owner;
+    }
+
+    /**
+     * Updates the chunks requested ahead of the group. The track ahead is only walked again
+     * when the head of the group enters another chunk, changes direction, or when the track
+     * walked before ran into a chunk that was not yet loaded.
+     */
+    public void update() {
+        MinecartMember<?> head = this.owner.head();
+        double force = this.owner.getAverageForce();
+        if (head == null || force < MIN_FORCE) {
+            this.release();
+            return;
+        }
+        Block block = head.getBlock();
+        BlockFace direction = head.getDirectionTo();
+        if (block == null || direction == null) {
+            this.release();
+            return;
+        }
+        World world = block.getWorld();
+        int distance = Math.min(MAX_DISTANCE, (int) Math.ceil(force * PRELOAD_TICKS));
+        boolean changed = this.lastBlock == null || this.lastDirection != direction ||
+                (this.lastBlock.getX() >> 4) != (block.getX() >> 4) ||
+                (this.lastBlock.getZ() >> 4) != (block.getZ() >> 4) ||
+                this.lastBlock.getWorld() != world ||
+                distance > this.lastDistance + 16;
+        if (!changed && this.blocked && world.isChunkLoaded(this.blockedX, this.blockedZ)) {
+            changed = true;
+        }
+        if (!changed) {
+            return;
+        }
+        this.lastBlock = block;
+        this.lastDirection = direction;
+        this.lastDistance = distance;
+        this.blocked = false;
+
+        // Walk the track ahead without loading chunks, requesting the area around every chunk passed
+        newChunksBuffer.clear();
+        TrackIterator iter = new TrackIterator(block, direction, distance, true);
+        int lastCx = block.getX() >> 4;
+        int lastCz = block.getZ() >> 4;
+        addArea(lastCx, lastCz);
+        while (iter.hasNext()) {
+            Block next = iter.next();
+            if (next == null) {
+                break;
+            }
+            int cx = next.getX() >> 4;
+            int cz = next.getZ() >> 4;
+            if (cx != lastCx || cz != lastCz) {
+                lastCx = cx;
+                lastCz = cz;
+                addArea(cx, cz);
+            }
+        }
+
+        // If the track continues into a chunk that is not loaded, request it and continue once it is
+        if (iter.getDistance() < distance && iter.currentPos() != null && iter.currentDirection() != null) {
+            Block pos = iter.currentPos();
+            int cx = (pos.getX() + iter.currentDirection().getModX()) >> 4;
+            int cz = (pos.getZ() + iter.currentDirection().getModZ()) >> 4;
+            if (!world.isChunkLoaded(cx, cz)) {
+                this.blocked = true;
+                this.blockedX = cx;
+                this.blockedZ = cz;
+                addArea(cx, cz);
+            }
+        }
+        this.ticket.update(world, newChunksBuffer, false);
+    }
+
+    private static void addArea(int cx, int cz) {
+        for (int x = cx - ChunkArea.CHUNK_RANGE; x <= cx + ChunkArea.CHUNK_RANGE; x++) {
+            for (int z = cz - ChunkArea.CHUNK_RANGE; z <= cz + ChunkArea.CHUNK_RANGE; z++) {
+                newChunksBuffer.add(MathUtil.longHashToLong(x, z));
+            }
+        }
+    }
+
+    /**
+     * Stops requesting chunks ahead of the group. The chunks requested before stay loaded
+     * for a little while longer.
+     */
+    public void release() {
+        this.ticket.release();
+        this.lastBlock = null;
+        this.lastDirection = null;
+        this.lastDistance = 0;
+        this.blocked = false;
+    }
+}
@@ -0,0 +1,157 @@
+package com.bergerkiller.bukkit.tc.detector;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps the blocks of a single chunk to the detector regions covering them.
+ * Blocks are stored as sorted local block keys, with for every block the list of regions.
+ * Blocks covered by the same regions share the same (immutable) list, so looking up
+ * the regions at a block allocates nothing, and the lists can be iterated while regions change.
+ */
+final class DetectorChunk {
+    private static final int[] NO_BLOCKS = new int[0];
+    private int[] blocks = NO_BLOCKS;
+    private List<DetectorRegion>[] regions = newLists(0);
+    private int size = 0;
+
+    /**
+     * Gets the local key of a block within its chunk, from the packed block coordinates
+     *
+     * @param coordinate packed block coordinates
+     * @return local block key
+     */
+    public static int getLocalKey(long coordinate) {
+        return (int) (coordinate & 0xFFFFF);
+    }
+
+    /**
+     * Gets the key of the chunk a block is in, from the packed block coordinates
+     *
+     * @param coordinate packed block coordinates
+     * @return chunk key
+     */
+    public static long getChunkKey(long coordinate) {
+        return coordinate >> 20;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Gets the regions covering a block
+     *
+     * @param localKey of the block
+     * @return regions, or null if none cover the block
+     */
+    public List<DetectorRegion> get(int localKey) {
+        int index = Arrays.binarySearch(this.blocks, 0, this.size, localKey);
+        return (index >= 0) ? this.regions[index] : null;
+    }
+
+    /**
+     * Adds a region to the blocks it covers in this chunk
+     *
+     * @param region to add
+     * @param coordinates of the region, sorted
+     * @param start of the coordinates in this chunk
+     * @param end of the coordinates in this chunk (exclusive)
+     * @return amount of blocks that were not covered by any region before
+     */
+    public int add(DetectorRegion region, long[] coordinates, int start, int end) {
+        Map<List<DetectorRegion>, List<DetectorRegion>> transitions = new IdentityHashMap<>();
+        List<DetectorRegion> single = Collections.singletonList(region);
+        int[] newBlocks = new int[this.size + (end - start)];
+        List<DetectorRegion>[] newRegions = newLists(newBlocks.length);
+        int newSize = 0, i = 0, added = 0;
+        for (int c = start; c < end; c++) {
+            int key = getLocalKey(coordinates[c]);
+            while (i < this.size && this.blocks[i] < key) {
+                newBlocks[newSize] = this.blocks[i];
+                newRegions[newSize++] = this.regions[i++];
+            }
+            newBlocks[newSize] = key;
+            if (i < this.size && this.blocks[i] == key) {
+                List<DetectorRegion> old = this.regions[i++];
+                List<DetectorRegion> list = transitions.get(old);
+                if (list == null) {
+                    DetectorRegion[] arr = old.toArray(new DetectorRegion[old.size() + 1]);
+                    arr[old.size()] = region;
+                    list = Collections.unmodifiableList(Arrays.asList(arr));
+                    transitions.put(old, list);
+                }
+                newRegions[newSize++] = list;
+            } else {
+                newRegions[newSize++] = single;
+                added++;
+            }
+        }
+        while (i < this.size) {
+            newBlocks[newSize] = this.blocks[i];
+            newRegions[newSize++] = this.regions[i++];
+        }
+        this.blocks = (newSize == newBlocks.length) ? newBlocks : Arrays.copyOf(newBlocks, newSize);
+        this.regions = (newSize == newRegions.length) ? newRegions : Arrays.copyOf(newRegions, newSize);
+        this.size = newSize;
+        return added;
+    }
+
+    /**
+     * Removes a region from the blocks it covers in this chunk
+     *
+     * @param region to remove
+     * @param coordinates of the region, sorted
+     * @param start of the coordinates in this chunk
+     * @param end of the coordinates in this chunk (exclusive)
+     * @return amount of blocks no longer covered by any region
+     */
+    public int remove(DetectorRegion region, long[] coordinates, int start, int end) {
+        Map<List<DetectorRegion>, List<DetectorRegion>> transitions = new IdentityHashMap<>();
+        int removed = 0;
+        for (int c = start; c < end; c++) {
+            int index = Arrays.binarySearch(this.blocks, 0, this.size, getLocalKey(coordinates[c]));
+            if (index < 0) {
+                continue;
+            }
+            List<DetectorRegion> old = this.regions[index];
+            List<DetectorRegion> list = transitions.get(old);
+            if (list == null) {
+                DetectorRegion[] arr = new DetectorRegion[old.size()];
+                int n = 0;
+                for (DetectorRegion r : old) {
+                    if (r != region) {
+                        arr[n++] = r;
+                    }
+                }
+                list = (n == 0) ? null : Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(arr, n)));
+                transitions.put(old, list);
+            }
+            this.regions[index] = list;
+            if (list == null) {
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            // Remove the blocks no longer covered
+            int newSize = 0;
+            for (int i = 0; i < this.size; i++) {
+                if (this.regions[i] != null) {
+                    this.blocks[newSize] = this.blocks[i];
+                    this.regions[newSize++] = this.regions[i];
+                }
+            }
+            Arrays.fill(this.regions, newSize, this.size, null);
+            this.size = newSize;
+        }
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<DetectorRegion>[] newLists(int length) {
+        return new List[length];
+    }
+}
@@ -1,14 +1,14 @@
 package com.bergerkiller.bukkit.tc.detector;
 
 import com.bergerkiller.bukkit.common.bases.IntVector3;
-import com.bergerkiller.bukkit.common.collections.BlockMap;
 import com.bergerkiller.bukkit.common.config.DataReader;
-import com.bergerkiller.bukkit.common.config.DataWriter;
 import com.bergerkiller.bukkit.common.utils.StreamUtil;
+import com.bergerkiller.bukkit.common.wrappers.LongHashMap;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
-import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroupStore;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
 import org.bukkit.Bukkit;
 import org.bukkit.World;
 import org.bukkit.block.Block;
@@ -18,40 +18,150 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.*;
 import java.util.logging.Level;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
 
+/**
+ * A region of blocks that detects the minecarts entering and leaving it.
+ * The coordinates of a region are stored as a sorted array of packed block coordinates,
+ * and all regions are indexed per chunk, so that detecting minecarts moving between
+ * blocks allocates nothing.
+ */
 public final class DetectorRegion {
+    /**
+     * Version of the file format. Files start with the negated version,
+     * files without a version start with the (positive) region count.
+     */
+    private static final int FORMAT_VERSION = 1;
     private static List<DetectorListener> listenerBuffer = new ArrayList<>();
     private static HashMap<UUID, DetectorRegion> regionsById = new HashMap<>();
-    private static BlockMap<List<DetectorRegion>> regions = new BlockMap<>();
+    private static Map<String, LongHashMap<DetectorChunk>> regionChunks = new HashMap<>();
+    private static int blockCount = 0;
+    private static volatile List<DetectorRegion> lastSaved = null;
     private final UUID id;
     private final String world;
-    private final Set<IntVector3> coordinates;
+    private final long[] coordinates;
     private final Set<MinecartMember<?>> members = new HashSet<>();
     private final List<DetectorListener> listeners = new ArrayList<>(1);
+    private boolean membersDiscovered = false;
 
-    private DetectorRegion(final UUID uniqueId, final String world, final Set<IntVector3> coordinates) {
+    private DetectorRegion(final UUID uniqueId, final String world, final long[] coordinates) {
         this.world = world;
         this.id = uniqueId;
         this.coordinates = coordinates;
         regionsById.put(this.id, this);
-        for (IntVector3 coord : this.coordinates) {
-            List<DetectorRegion> list = regions.get(world, coord);
-            if (list == null) {
-                list = new ArrayList<>(1);
-                regions.put(world, coord, list);
+        LongHashMap<DetectorChunk> chunks = regionChunks.get(world);
+        if (chunks == null) {
+            chunks = new LongHashMap<>();
+            regionChunks.put(world, chunks);
+        }
+        for (int start = 0, end; start < coordinates.length; start = end) {
+            long chunkKey = DetectorChunk.getChunkKey(coordinates[start]);
+            end = getChunkEnd(coordinates, start);
+            DetectorChunk chunk = chunks.get(chunkKey);
+            if (chunk == null) {
+                chunk = new DetectorChunk();
+                chunks.put(chunkKey, chunk);
             }
-            list.add(this);
+            blockCount += chunk.add(this, coordinates, start, end);
+        }
+    }
+
+    /**
+     * Adds the minecarts already inside this region when it was created. This is deferred until
+     * the members are first needed, as minecarts moving into the region are added by their
+     * block trackers. Only the blocks of the loaded minecarts are checked.
+     */
+    private void discoverMembers() {
+        if (this.membersDiscovered) {
+            return;
         }
-        //load members
+        this.membersDiscovered = true;
         World w = Bukkit.getServer().getWorld(this.world);
-        if (w != null) {
-            for (IntVector3 coord : this.coordinates) {
-                MinecartMember<?> mm = MinecartMemberStore.getAt(w, coord);
-                if (mm != null && this.members.add(mm)) {
-                    this.onEnter(mm);
+        if (w == null) {
+            return;
+        }
+        List<MinecartMember<?>> found = new ArrayList<>();
+        for (MinecartGroup group : MinecartGroupStore.getGroupsUnsafe()) {
+            if (group.getWorld() != w) {
+                continue;
+            }
+            for (MinecartMember<?> mm : group) {
+                if (!mm.isUnloaded() && this.contains(pack(mm.getBlock()))) {
+                    found.add(mm);
                 }
             }
         }
+        for (MinecartMember<?> mm : found) {
+            this.add(mm);
+        }
+    }
+
+    /**
+     * Packs block coordinates into a single long. Coordinates in the same chunk share
+     * the upper bits, so that sorted coordinates are grouped by chunk.
+     *
+     * @param x - coordinate of the block
+     * @param y - coordinate of the block
+     * @param z - coordinate of the block
+     * @return packed coordinates
+     */
+    public static long pack(int x, int y, int z) {
+        return ((long) (x >> 4) << 42) | (((long) (z >> 4) & 0x3FFFFFL) << 20) |
+                ((long) (y & 0xFFF) << 8) | ((z & 0xF) << 4) | (x & 0xF);
+    }
+
+    /**
+     * Unpacks block coordinates packed using {@link #pack(int, int, int)}
+     *
+     * @param coordinate to unpack
+     * @return block coordinates
+     */
+    public static IntVector3 unpack(long coordinate) {
+        int x = ((int) (coordinate >> 42) << 4) | (int) (coordinate & 0xF);
+        int y = (int) ((coordinate >> 8) & 0xFFF);
+        int z = ((int) (coordinate << 22 >> 42) << 4) | (int) ((coordinate >> 4) & 0xF);
+        return new IntVector3(x, y, z);
+    }
+
+    private static long pack(Block block) {
+        return pack(block.getX(), block.getY(), block.getZ());
+    }
+
+    private static int getChunkEnd(long[] coordinates, int start) {
+        long chunkKey = DetectorChunk.getChunkKey(coordinates[start]);
+        int end = start + 1;
+        while (end < coordinates.length && DetectorChunk.getChunkKey(coordinates[end]) == chunkKey) {
+            end++;
+        }
+        return end;
+    }
+
+    private static List<DetectorRegion> getRegionsAt(String world, long coordinate) {
+        LongHashMap<DetectorChunk> chunks = regionChunks.get(world);
+        if (chunks == null) {
+            return null;
+        }
+        DetectorChunk chunk = chunks.get(DetectorChunk.getChunkKey(coordinate));
+        return (chunk == null) ? null : chunk.get(DetectorChunk.getLocalKey(coordinate));
+    }
+
+    private static List<DetectorRegion> getRegionsAt(Block block) {
+        return getRegionsAt(block.getWorld().getName(), pack(block));
+    }
+
+    /**
+     * Sorts packed coordinates and removes duplicates
+     */
+    private static long[] sortUnique(long[] coordinates) {
+        Arrays.sort(coordinates);
+        int count = 0;
+        for (int i = 0; i < coordinates.length; i++) {
+            if (count == 0 || coordinates[count - 1] != coordinates[i]) {
+                coordinates[count++] = coordinates[i];
+            }
+        }
+        return (count == coordinates.length) ? coordinates : Arrays.copyOf(coordinates, count);
     }
 
     public static List<DetectorRegion> handleMove(MinecartMember<?> mm, Block from, Block to) {
@@ -60,12 +170,12 @@ public final class DetectorRegion {
         } else if (from.getWorld() != to.getWorld()) {
             handleLeave(mm, from);
         } else {
-            List<DetectorRegion> list = regions.get(from);
+            List<DetectorRegion> list = getRegionsAt(from);
             //Leave the regions if the to-location is not contained
             if (list != null) {
-                IntVector3 toCoords = new IntVector3(to);
+                long toCoord = pack(to);
                 for (DetectorRegion region : list) {
-                    if (!region.coordinates.contains(toCoords)) {
+                    if (!region.contains(toCoord)) {
                         region.remove(mm);
                     }
                 }
@@ -76,7 +186,7 @@ public final class DetectorRegion {
     }
 
     public static List<DetectorRegion> handleLeave(MinecartMember<?> mm, Block block) {
-        List<DetectorRegion> list = regions.get(block);
+        List<DetectorRegion> list = getRegionsAt(block);
         if (list == null) {
             return Collections.emptyList();
         }
@@ -87,7 +197,7 @@ public final class DetectorRegion {
     }
 
     public static List<DetectorRegion> handleEnter(MinecartMember<?> mm, Block block) {
-        List<DetectorRegion> list = regions.get(block);
+        List<DetectorRegion> list = getRegionsAt(block);
         if (list == null) {
             return Collections.emptyList();
         }
@@ -100,16 +210,17 @@ public final class DetectorRegion {
     public static DetectorRegion create(Collection<Block> blocks) {
         if (blocks.isEmpty()) return null;
         World world = null;
-        Set<IntVector3> coords = new HashSet<>(blocks.size());
+        long[] coords = new long[blocks.size()];
+        int count = 0;
         for (Block b : blocks) {
             if (world == null) {
                 world = b.getWorld();
             } else if (world != b.getWorld()) {
                 continue;
             }
-            coords.add(new IntVector3(b));
+            coords[count++] = pack(b);
         }
-        return create(world, coords);
+        return create(world.getName(), Arrays.copyOf(coords, count));
     }
 
     public static DetectorRegion create(World world, final Set<IntVector3> coordinates) {
@@ -117,25 +228,40 @@ public final class DetectorRegion {
     }
 
     public static DetectorRegion create(final String world, final Set<IntVector3> coordinates) {
-        //first check if this region is not already defined
+        long[] coords = new long[coordinates.size()];
+        int count = 0;
         for (IntVector3 coord : coordinates) {
-            List<DetectorRegion> list = regions.get(world, coord);
+            coords[count++] = pack(coord.x, coord.y, coord.z);
+        }
+        return create(world, coords);
+    }
+
+    private static DetectorRegion create(final String world, long[] coordinates) {
+        coordinates = sortUnique(coordinates);
+        //first check if this region is not already defined
+        if (coordinates.length > 0) {
+            List<DetectorRegion> list = getRegionsAt(world, coordinates[0]);
             if (list != null) {
                 for (DetectorRegion region : list) {
-                    if (!region.coordinates.containsAll(coordinates)) continue;
-                    if (!coordinates.containsAll(region.coordinates)) continue;
-                    return region;
+                    if (Arrays.equals(region.coordinates, coordinates)) {
+                        return region;
+                    }
                 }
             }
-            break;
         }
         return new DetectorRegion(UUID.randomUUID(), world, coordinates);
     }
 
+    /**
+     * Gets all regions covering a block. The list returned can not be modified.
+     *
+     * @param at block
+     * @return regions covering the block
+     */
     public static List<DetectorRegion> getRegions(Block at) {
-        List<DetectorRegion> rval = regions.get(at);
+        List<DetectorRegion> rval = getRegionsAt(at);
         if (rval == null) {
-            return new ArrayList<>(0);
+            return Collections.emptyList();
         } else {
             return rval;
         }
@@ -146,62 +272,140 @@ public final class DetectorRegion {
     }
 
     public static void init(String filename) {
+        SaveQueue.waitForSaves();
         regionsById.clear();
-        regions.clear();
+        regionChunks.clear();
+        blockCount = 0;
         new DataReader(filename) {
             public void read(DataInputStream stream) throws IOException {
-                int count = stream.readInt();
-                int coordcount;
-                for (; count > 0; --count) {
-                    //get required info
-                    UUID id = StreamUtil.readUUID(stream);
-                    String world = stream.readUTF();
-                    coordcount = stream.readInt();
-                    Set<IntVector3> coords = new HashSet<>(coordcount);
-                    for (; coordcount > 0; --coordcount) {
-                        coords.add(IntVector3.read(stream));
+                int header = stream.readInt();
+                if (header >= 0) {
+                    readLegacy(stream, header);
+                } else if (-header == FORMAT_VERSION) {
+                    DataInputStream data = new DataInputStream(new InflaterInputStream(stream));
+                    for (int count = data.readInt(); count > 0; --count) {
+                        UUID id = StreamUtil.readUUID(data);
+                        String world = data.readUTF();
+                        new DetectorRegion(id, world, DetectorRuns.read(data));
                     }
-                    //create
-                    new DetectorRegion(id, world, coords);
+                } else {
+                    throw new IOException("Unsupported detector regions format version " + (-header));
                 }
                 if (regionsById.size() == 1) {
-                    TrainCarts.plugin.log(Level.INFO, regionsById.size() + " detector rail region loaded covering " + regions.size() + " blocks");
+                    TrainCarts.plugin.log(Level.INFO, regionsById.size() + " detector rail region loaded covering " + blockCount + " blocks");
                 } else {
-                    TrainCarts.plugin.log(Level.INFO, regionsById.size() + " detector rail regions loaded covering " + regions.size() + " blocks");
+                    TrainCarts.plugin.log(Level.INFO, regionsById.size() + " detector rail regions loaded covering " + blockCount + " blocks");
                 }
             }
         }.read();
     }
 
+    /**
+     * Reads the regions from a file written before the format was versioned,
+     * storing every coordinate as three ints
+     */
+    private static void readLegacy(DataInputStream stream, int count) throws IOException {
+        for (; count > 0; --count) {
+            //get required info
+            UUID id = StreamUtil.readUUID(stream);
+            String world = stream.readUTF();
+            int coordcount = stream.readInt();
+            long[] coords = new long[coordcount];
+            for (int i = 0; i < coordcount; i++) {
+                coords[i] = pack(stream.readInt(), stream.readInt(), stream.readInt());
+            }
+            //create
+            new DetectorRegion(id, world, sortUnique(coords));
+        }
+    }
+
+    /**
+     * Saves all regions to file. The regions are encoded and written in the background,
+     * which is safe as the coordinates of a region never change. Nothing is written when
+     * no regions were added or removed since the last save.
+     *
+     * @param filename to save to
+     */
     public static void save(String filename) {
-        new DataWriter(filename) {
+        final List<DetectorRegion> regions = new ArrayList<>(regionsById.values());
+        if (regions.equals(lastSaved)) {
+            return;
+        }
+        SaveQueue.submit(filename, new SaveQueue.Snapshot() {
+            @Override
             public void write(DataOutputStream stream) throws IOException {
-                stream.writeInt(regionsById.size());
-                for (DetectorRegion region : regionsById.values()) {
-                    StreamUtil.writeUUID(stream, region.id);
-                    stream.writeUTF(region.world);
-                    stream.writeInt(region.coordinates.size());
-                    for (IntVector3 coord : region.coordinates) {
-                        coord.write(stream);
-                    }
+                stream.writeInt(-FORMAT_VERSION);
+                DeflaterOutputStream compressed = new DeflaterOutputStream(stream);
+                DataOutputStream data = new DataOutputStream(compressed);
+                data.writeInt(regions.size());
+                for (DetectorRegion region : regions) {
+                    StreamUtil.writeUUID(data, region.id);
+                    data.writeUTF(region.world);
+                    DetectorRuns.write(data, region.coordinates);
                 }
+                data.flush();
+                compressed.finish();
             }
-        }.write();
+
+            @Override
+            public void saved() {
+                lastSaved = regions;
+            }
+        });
+    }
+
+    public static void deinit() {
+        lastSaved = null;
     }
 
     public String getWorldName() {
         return this.world;
     }
 
+    /**
+     * Gets all coordinates of the blocks in this region.
+     * This creates a new set, use {@link #contains(Block)} to check single blocks.
+     *
+     * @return coordinates
+     */
     public Set<IntVector3> getCoordinates() {
-        return this.coordinates;
+        Set<IntVector3> rval = new HashSet<>(this.coordinates.length);
+        for (long coord : this.coordinates) {
+            rval.add(unpack(coord));
+        }
+        return rval;
+    }
+
+    /**
+     * Gets the amount of blocks in this region
+     *
+     * @return block count
+     */
+    public int getCoordinateCount() {
+        return this.coordinates.length;
+    }
+
+    /**
+     * Checks whether a block is part of this region
+     *
+     * @param block to check
+     * @return True if the block is contained, False if not
+     */
+    public boolean contains(Block block) {
+        return block.getWorld().getName().equals(this.world) && contains(pack(block));
+    }
+
+    private boolean contains(long coordinate) {
+        return Arrays.binarySearch(this.coordinates, coordinate) >= 0;
     }
 
     public Set<MinecartMember<?>> getMembers() {
+        this.discoverMembers();
         return this.members;
     }
 
     public Set<MinecartGroup> getGroups() {
+        this.discoverMembers();
         Set<MinecartGroup> rval = new HashSet<>();
         for (MinecartMember<?> mm : this.members) {
             if (mm.getGroup() == null) continue;
@@ -215,6 +419,7 @@ public final class DetectorRegion {
     }
 
     public void register(DetectorListener listener) {
+        this.discoverMembers();
         this.listeners.add(listener);
         listener.onRegister(this);
         for (MinecartMember<?> mm : this.members) {
@@ -317,12 +522,18 @@ public final class DetectorRegion {
             iter.remove();
         }
         regionsById.remove(this.id);
-        for (IntVector3 coord : this.coordinates) {
-            List<DetectorRegion> list = regions.get(this.world, coord);
-            if (list == null) continue;
-            list.remove(this);
-            if (list.isEmpty()) {
-                regions.remove(this.world, coord);
+        LongHashMap<DetectorChunk> chunks = regionChunks.get(this.world);
+        if (chunks == null) {
+            return;
+        }
+        for (int start = 0, end; start < this.coordinates.length; start = end) {
+            long chunkKey = DetectorChunk.getChunkKey(this.coordinates[start]);
+            end = getChunkEnd(this.coordinates, start);
+            DetectorChunk chunk = chunks.get(chunkKey);
+            if (chunk == null) continue;
+            blockCount -= chunk.remove(this, this.coordinates, start, end);
+            if (chunk.isEmpty()) {
+                chunks.remove(chunkKey);
             }
         }
     }
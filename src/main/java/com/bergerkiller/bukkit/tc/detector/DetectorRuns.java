@@ -0,0 +1,174 @@
+package com.bergerkiller.bukkit.tc.detector;
+
+import com.bergerkiller.bukkit.common.bases.IntVector3;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Stores the coordinates of a detector region as runs of adjacent blocks. Detector regions
+ * follow track, so most regions are stored as a single run: the start block, followed by
+ * one byte per block for the step to the next block. The start of every other run is
+ * stored relative to the end of the run before it.
+ */
+final class DetectorRuns {
+    private static final int[][] STEPS = new int[26][];
+    private static final int NO_STEP = 13; // Step code of (0, 0, 0)
+
+    static {
+        // Direct neighbours first, so runs follow the track before taking diagonal steps
+        int i = 0;
+        for (int manhattan = 1; manhattan <= 3; manhattan++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dz = -1; dz <= 1; dz++) {
+                        if ((Math.abs(dx) + Math.abs(dy) + Math.abs(dz)) == manhattan) {
+                            STEPS[i++] = new int[] {dx, dy, dz};
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes region coordinates as runs
+     *
+     * @param stream to write to
+     * @param coordinates of the region, packed and sorted
+     * @throws IOException when writing fails
+     */
+    public static void write(DataOutputStream stream, long[] coordinates) throws IOException {
+        final int count = coordinates.length;
+        stream.writeInt(count);
+        if (count == 0) {
+            return;
+        }
+
+        // Runs start at blocks with few neighbours (track ends), so they are not split halfway
+        int[] neighbours = new int[count];
+        for (int i = 0; i < count; i++) {
+            IntVector3 pos = DetectorRegion.unpack(coordinates[i]);
+            for (int[] step : STEPS) {
+                if (indexOf(coordinates, pos.x + step[0], pos.y + step[1], pos.z + step[2]) >= 0) {
+                    neighbours[i]++;
+                }
+            }
+        }
+        boolean[] visited = new boolean[count];
+        byte[] steps = new byte[count];
+        int lastX = 0, lastY = 0, lastZ = 0;
+        int remaining = count;
+        for (int maxNeighbours = 1; remaining > 0; maxNeighbours = Integer.MAX_VALUE) {
+            for (int start = 0; start < count && remaining > 0; start++) {
+                if (visited[start] || neighbours[start] > maxNeighbours) {
+                    continue;
+                }
+
+                // Follow adjacent blocks from the start until none are left
+                IntVector3 pos = DetectorRegion.unpack(coordinates[start]);
+                visited[start] = true;
+                remaining--;
+                writeVarInt(stream, pos.x - lastX);
+                writeVarInt(stream, pos.y - lastY);
+                writeVarInt(stream, pos.z - lastZ);
+                int x = pos.x, y = pos.y, z = pos.z;
+                int stepCount = 0;
+                while (true) {
+                    int next = -1;
+                    int code = NO_STEP;
+                    for (int[] step : STEPS) {
+                        int index = indexOf(coordinates, x + step[0], y + step[1], z + step[2]);
+                        if (index >= 0 && !visited[index]) {
+                            next = index;
+                            code = (step[0] + 1) * 9 + (step[1] + 1) * 3 + (step[2] + 1);
+                            x += step[0];
+                            y += step[1];
+                            z += step[2];
+                            break;
+                        }
+                    }
+                    if (next == -1) {
+                        break;
+                    }
+                    visited[next] = true;
+                    remaining--;
+                    steps[stepCount++] = (byte) code;
+                }
+                writeVarInt(stream, stepCount);
+                stream.write(steps, 0, stepCount);
+                lastX = x;
+                lastY = y;
+                lastZ = z;
+            }
+        }
+    }
+
+    /**
+     * Reads region coordinates written using {@link #write(DataOutputStream, long[])}
+     *
+     * @param stream to read from
+     * @return coordinates of the region, packed and sorted
+     * @throws IOException when reading fails
+     */
+    public static long[] read(DataInputStream stream) throws IOException {
+        final int count = stream.readInt();
+        long[] coordinates = new long[count];
+        byte[] steps = new byte[0];
+        int x = 0, y = 0, z = 0;
+        int index = 0;
+        while (index < count) {
+            x += readVarInt(stream);
+            y += readVarInt(stream);
+            z += readVarInt(stream);
+            coordinates[index++] = DetectorRegion.pack(x, y, z);
+            int stepCount = readVarInt(stream);
+            if (stepCount < 0 || stepCount > (count - index)) {
+                throw new IOException("Invalid detector region run length: " + stepCount);
+            }
+            if (stepCount > steps.length) {
+                steps = new byte[stepCount];
+            }
+            stream.readFully(steps, 0, stepCount);
+            for (int i = 0; i < stepCount; i++) {
+                int code = steps[i];
+                x += (code / 9) - 1;
+                y += ((code / 3) % 3) - 1;
+                z += (code % 3) - 1;
+                coordinates[index++] = DetectorRegion.pack(x, y, z);
+            }
+        }
+        Arrays.sort(coordinates);
+        return coordinates;
+    }
+
+    private static int indexOf(long[] coordinates, int x, int y, int z) {
+        return Arrays.binarySearch(coordinates, DetectorRegion.pack(x, y, z));
+    }
+
+    /**
+     * Writes a signed integer using 1 to 5 bytes, using less bytes for values closer to zero
+     */
+    private static void writeVarInt(DataOutputStream stream, int value) throws IOException {
+        int bits = (value << 1) ^ (value >> 31);
+        while ((bits & ~0x7F) != 0) {
+            stream.writeByte((bits & 0x7F) | 0x80);
+            bits >>>= 7;
+        }
+        stream.writeByte(bits);
+    }
+
+    private static int readVarInt(DataInputStream stream) throws IOException {
+        int bits = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = stream.readUnsignedByte();
+            bits |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (bits >>> 1) ^ -(bits & 1);
+            }
+        }
+        throw new IOException("Invalid variable-length integer");
+    }
+}
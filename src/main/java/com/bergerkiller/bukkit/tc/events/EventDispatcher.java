@@ -0,0 +1,38 @@
+package com.bergerkiller.bukkit.tc.events;
+
+import com.bergerkiller.bukkit.common.utils.CommonUtil;
+import org.bukkit.event.Event;
+import org.bukkit.event.HandlerList;
+
+/**
+ * Fires events on hot code paths. Bukkit's event dispatch synchronizes and walks the handler
+ * lists even when no listeners are registered, which adds up when events are fired for every
+ * cart every tick. The handler lists are checked first, so that events without listeners
+ * are neither constructed nor dispatched.
+ */
+public class EventDispatcher {
+
+    /**
+     * Checks whether any listeners are registered in a handler list
+     *
+     * @param handlers of the event type
+     * @return True if listeners are registered, False if not
+     */
+    public static boolean hasListeners(HandlerList handlers) {
+        return handlers.getRegisteredListeners().length > 0;
+    }
+
+    /**
+     * Fires an event, but only when listeners are registered for it.
+     * When no listeners are registered, the event is returned unchanged.
+     *
+     * @param event to fire
+     * @return the input event
+     */
+    public static <T extends Event> T call(T event) {
+        if (hasListeners(event.getHandlers())) {
+            CommonUtil.callEvent(event);
+        }
+        return event;
+    }
+}
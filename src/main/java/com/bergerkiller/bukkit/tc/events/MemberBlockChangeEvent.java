@@ -21,7 +21,9 @@ public class MemberBlockChangeEvent extends MemberEvent {
     }
 
     public static void call(final MinecartMember<?> member, final Block from, final Block to) {
-        CommonUtil.callEvent(new MemberBlockChangeEvent(member, from, to));
+        if (EventDispatcher.hasListeners(handlers)) {
+            CommonUtil.callEvent(new MemberBlockChangeEvent(member, from, to));
+        }
     }
 
     public Block getFrom() {
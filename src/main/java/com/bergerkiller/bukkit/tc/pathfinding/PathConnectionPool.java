@@ -0,0 +1,181 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import org.bukkit.block.BlockFace;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores the connections of all path nodes in primitive parallel arrays, instead of
+ * as separate objects. Every node owns a slice of consecutive slots in these arrays.
+ * When the slice of a node is full, it is moved to the end with double the capacity.
+ * The slices left behind are reclaimed by compacting once they make up half of the slots.<br><br>
+ * <p/>
+ * Slots are only valid until the next connection is added, as compacting moves them.
+ */
+class PathConnectionPool {
+    private static final BlockFace[] FACES = BlockFace.values();
+    private static PathNode[] targets = new PathNode[64];
+    private static int[] distances = new int[64];
+    private static byte[] directions = new byte[64];
+    private static boolean[] signs = new boolean[64];
+    private static int size = 0;
+    private static int unused = 0;
+
+    /**
+     * Removes all connections of all nodes
+     */
+    public static void clear() {
+        targets = new PathNode[64];
+        distances = new int[64];
+        directions = new byte[64];
+        signs = new boolean[64];
+        size = 0;
+        unused = 0;
+    }
+
+    /**
+     * Gets the amount of slots in use, including slots no longer owned by a node.
+     * All slots are below this amount.
+     *
+     * @return slot count
+     */
+    public static int getSlotCount() {
+        return size;
+    }
+
+    public static PathNode getTarget(int slot) {
+        return targets[slot];
+    }
+
+    public static int getDistance(int slot) {
+        return distances[slot];
+    }
+
+    public static BlockFace getDirection(int slot) {
+        return FACES[directions[slot]];
+    }
+
+    /**
+     * Gets whether the track of a connection passes signs other than those of the nodes it connects
+     *
+     * @param slot of the connection
+     * @return True if other signs are passed, or if this is not known
+     */
+    public static boolean passesSigns(int slot) {
+        return signs[slot];
+    }
+
+    /**
+     * Sets whether the track of a connection passes signs other than those of the nodes it connects
+     *
+     * @param node that owns the connection
+     * @param index of the connection in the node
+     * @param passesSigns whether other signs are passed
+     */
+    public static void setPassesSigns(PathNode node, int index, boolean passesSigns) {
+        signs[node.connStart + index] = passesSigns;
+    }
+
+    /**
+     * Adds a connection at the end of the connections of a node
+     *
+     * @param node to add a connection to
+     * @param target of the connection
+     * @param distance of the connection
+     * @param direction of the connection
+     * @param passesSigns whether the track of the connection passes other signs
+     */
+    public static void add(PathNode node, PathNode target, int distance, BlockFace direction, boolean passesSigns) {
+        if (node.connCount == node.connCapacity) {
+            grow(node);
+        }
+        int slot = node.connStart + node.connCount++;
+        targets[slot] = target;
+        distances[slot] = distance;
+        directions[slot] = (byte) direction.ordinal();
+        signs[slot] = passesSigns;
+    }
+
+    /**
+     * Removes a single connection of a node, keeping the order of the others
+     *
+     * @param node to remove a connection from
+     * @param index of the connection in the node
+     */
+    public static void remove(PathNode node, int index) {
+        int slot = node.connStart + index;
+        int moved = node.connCount - index - 1;
+        System.arraycopy(targets, slot + 1, targets, slot, moved);
+        System.arraycopy(distances, slot + 1, distances, slot, moved);
+        System.arraycopy(directions, slot + 1, directions, slot, moved);
+        System.arraycopy(signs, slot + 1, signs, slot, moved);
+        node.connCount--;
+        targets[node.connStart + node.connCount] = null;
+    }
+
+    /**
+     * Removes all connections of a node and releases its slots
+     *
+     * @param node to release
+     */
+    public static void release(PathNode node) {
+        Arrays.fill(targets, node.connStart, node.connStart + node.connCapacity, null);
+        unused += node.connCapacity;
+        node.connStart = node.connCount = node.connCapacity = 0;
+    }
+
+    private static void grow(PathNode node) {
+        int newCapacity = Math.max(2, node.connCapacity * 2);
+        if (unused > (size >> 1) && unused >= 64) {
+            compact();
+        }
+        ensureLength(size + newCapacity);
+        System.arraycopy(targets, node.connStart, targets, size, node.connCount);
+        System.arraycopy(distances, node.connStart, distances, size, node.connCount);
+        System.arraycopy(directions, node.connStart, directions, size, node.connCount);
+        System.arraycopy(signs, node.connStart, signs, size, node.connCount);
+        Arrays.fill(targets, node.connStart, node.connStart + node.connCapacity, null);
+        unused += node.connCapacity;
+        node.connStart = size;
+        node.connCapacity = newCapacity;
+        size += newCapacity;
+    }
+
+    private static void ensureLength(int length) {
+        if (length > targets.length) {
+            int newLength = Math.max(length, targets.length * 2);
+            targets = Arrays.copyOf(targets, newLength);
+            distances = Arrays.copyOf(distances, newLength);
+            directions = Arrays.copyOf(directions, newLength);
+            signs = Arrays.copyOf(signs, newLength);
+        }
+    }
+
+    /**
+     * Moves the slices of all nodes together, leaving no unused slots in between
+     */
+    private static void compact() {
+        List<PathNode> nodes = PathNode.getNodes();
+        PathNode[] newTargets = new PathNode[Math.max(64, targets.length)];
+        int[] newDistances = new int[newTargets.length];
+        byte[] newDirections = new byte[newTargets.length];
+        boolean[] newSigns = new boolean[newTargets.length];
+        int newSize = 0;
+        for (PathNode node : nodes) {
+            System.arraycopy(targets, node.connStart, newTargets, newSize, node.connCount);
+            System.arraycopy(distances, node.connStart, newDistances, newSize, node.connCount);
+            System.arraycopy(directions, node.connStart, newDirections, newSize, node.connCount);
+            System.arraycopy(signs, node.connStart, newSigns, newSize, node.connCount);
+            node.connStart = newSize;
+            node.connCapacity = node.connCount;
+            newSize += node.connCount;
+        }
+        targets = newTargets;
+        distances = newDistances;
+        directions = newDirections;
+        signs = newSigns;
+        size = newSize;
+        unused = 0;
+    }
+}
@@ -0,0 +1,380 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import org.bukkit.block.BlockFace;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Copy of all nodes and connections in the form they are stored in destinations.dat.
+ * Strings (names and worlds) are stored once in a shared table and referenced by id,
+ * and the connections of all nodes are stored in flat arrays, indexed by node offsets.
+ * It is captured on the main thread, after which it can be written from any thread.
+ */
+class PathGraphData {
+    /**
+     * Version of the file format. Files start with the negated version,
+     * files without a version start with the (positive) node count.
+     */
+    public static final int FORMAT_VERSION = 4;
+    private String[] strings;
+    private int[] nodeWorlds, nodeX, nodeY, nodeZ;
+    private byte[] nodeSwitchers; // Position of the location name among the names, -1 if none
+    private int[] nameOffsets, nameIds;
+    private int[] connOffsets, connTargets, connDistances;
+    private byte[] connDirections;
+    private byte[] connSigns; // 1 if the connection passes signs other than those of its nodes
+    private boolean signsKnown = true;
+    private int[] unfinished;
+    private int[] exploredNodes;
+    private byte[] exploredDirections;
+    private long[][] exploredChunks;
+
+    private PathGraphData() {
+    }
+
+    /**
+     * Copies all nodes and connections. Must be called on the main thread.
+     *
+     * @param nodes to copy, ordered by node index
+     * @param unfinishedNodes of which discovery is not yet finished
+     * @return copied graph data
+     */
+    public static PathGraphData capture(List<PathNode> nodes, Collection<PathNode> unfinishedNodes) {
+        PathGraphData data = new PathGraphData();
+        final int count = nodes.size();
+        Map<String, Integer> stringIds = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        data.nodeWorlds = new int[count];
+        data.nodeX = new int[count];
+        data.nodeY = new int[count];
+        data.nodeZ = new int[count];
+        data.nodeSwitchers = new byte[count];
+        data.nameOffsets = new int[count + 1];
+        data.connOffsets = new int[count + 1];
+        int nameCount = 0, connCount = 0;
+        for (PathNode node : nodes) {
+            nameCount += node.getNames().length;
+            connCount += node.getConnectionCount();
+        }
+        data.nameIds = new int[nameCount];
+        data.connTargets = new int[connCount];
+        data.connDistances = new int[connCount];
+        data.connDirections = new byte[connCount];
+        data.connSigns = new byte[connCount];
+        int nameIndex = 0, connIndex = 0;
+        List<Integer> exploredNodes = new ArrayList<>();
+        List<BlockFace> exploredDirections = new ArrayList<>();
+        List<long[]> exploredChunks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            PathNode node = nodes.get(i);
+            String locName = node.location.toString();
+            data.nodeWorlds[i] = getStringId(stringIds, strings, node.location.world);
+            data.nodeX[i] = node.location.x;
+            data.nodeY[i] = node.location.y;
+            data.nodeZ[i] = node.location.z;
+            data.nodeSwitchers[i] = -1;
+            data.nameOffsets[i] = nameIndex;
+            String[] names = node.getNames();
+            for (int n = 0; n < names.length; n++) {
+                if (names[n].equals(locName)) {
+                    data.nodeSwitchers[i] = (byte) n;
+                } else {
+                    data.nameIds[nameIndex++] = getStringId(stringIds, strings, names[n]);
+                }
+            }
+            data.connOffsets[i] = connIndex;
+            for (int c = 0; c < node.getConnectionCount(); c++) {
+                data.connTargets[connIndex] = node.getConnectionTarget(c).index;
+                data.connDistances[connIndex] = node.getConnectionDistance(c);
+                data.connDirections[connIndex] = (byte) node.getConnectionDirection(c).ordinal();
+                data.connSigns[connIndex] = (byte) (node.getConnectionPassesSigns(c) ? 1 : 0);
+                connIndex++;
+            }
+            for (Map.Entry<BlockFace, long[]> entry : node.getExplored().entrySet()) {
+                exploredNodes.add(i);
+                exploredDirections.add(entry.getKey());
+                exploredChunks.add(entry.getValue().clone());
+            }
+        }
+        data.nameOffsets[count] = nameIndex;
+        data.nameIds = Arrays.copyOf(data.nameIds, nameIndex);
+        data.connOffsets[count] = connIndex;
+        data.strings = strings.toArray(new String[strings.size()]);
+
+        // Nodes of which discovery is not finished, ignoring nodes that were removed
+        List<Integer> unfinished = new ArrayList<>();
+        for (PathNode node : unfinishedNodes) {
+            if (node.index >= 0 && node.index < count && nodes.get(node.index) == node) {
+                unfinished.add(node.index);
+            }
+        }
+        data.unfinished = toArray(unfinished);
+        data.exploredNodes = toArray(exploredNodes);
+        data.exploredDirections = new byte[exploredDirections.size()];
+        for (int i = 0; i < data.exploredDirections.length; i++) {
+            data.exploredDirections[i] = (byte) exploredDirections.get(i).ordinal();
+        }
+        data.exploredChunks = exploredChunks.toArray(new long[exploredChunks.size()][]);
+        return data;
+    }
+
+    /**
+     * Reads graph data, after the format version was read
+     *
+     * @param stream to read from
+     * @param version of the format, 2 up to {@link #FORMAT_VERSION}
+     * @return graph data read
+     * @throws IOException when reading fails
+     */
+    public static PathGraphData read(DataInputStream stream, int version) throws IOException {
+        PathGraphData data = new PathGraphData();
+        data.strings = new String[stream.readInt()];
+        for (int i = 0; i < data.strings.length; i++) {
+            data.strings[i] = stream.readUTF();
+        }
+        final int count = stream.readInt();
+        data.nodeWorlds = readInts(stream, count);
+        data.nodeX = readInts(stream, count);
+        data.nodeY = readInts(stream, count);
+        data.nodeZ = readInts(stream, count);
+        data.nodeSwitchers = new byte[count];
+        stream.readFully(data.nodeSwitchers);
+        if (version == 2) {
+            // Version 2 only stored whether the node contains a switcher
+            for (int i = 0; i < count; i++) {
+                data.nodeSwitchers[i] = (byte) (data.nodeSwitchers[i] == 0 ? -1 : 0);
+            }
+        }
+        data.nameOffsets = readInts(stream, count + 1);
+        data.nameIds = readInts(stream, data.nameOffsets[count]);
+        data.connOffsets = readInts(stream, count + 1);
+        final int connCount = data.connOffsets[count];
+        data.connTargets = readInts(stream, connCount);
+        data.connDistances = readInts(stream, connCount);
+        data.connDirections = new byte[connCount];
+        stream.readFully(data.connDirections);
+        data.connSigns = new byte[connCount];
+        if (version >= 4) {
+            stream.readFully(data.connSigns);
+        } else {
+            // Older versions did not store the signs passed, assume they are
+            Arrays.fill(data.connSigns, (byte) 1);
+            data.signsKnown = false;
+        }
+        data.unfinished = readInts(stream, stream.readInt());
+        final int exploredCount = stream.readInt();
+        data.exploredNodes = readInts(stream, exploredCount);
+        data.exploredDirections = new byte[exploredCount];
+        stream.readFully(data.exploredDirections);
+        data.exploredChunks = new long[exploredCount][];
+        for (int i = 0; i < exploredCount; i++) {
+            long[] chunks = new long[stream.readInt()];
+            for (int j = 0; j < chunks.length; j++) {
+                chunks[j] = stream.readLong();
+            }
+            data.exploredChunks[i] = chunks;
+        }
+        return data;
+    }
+
+    /**
+     * Writes this graph data, excluding the format version
+     *
+     * @param stream to write to
+     * @throws IOException when writing fails
+     */
+    public void write(DataOutputStream stream) throws IOException {
+        stream.writeInt(this.strings.length);
+        for (String string : this.strings) {
+            stream.writeUTF(string);
+        }
+        stream.writeInt(getNodeCount());
+        writeInts(stream, this.nodeWorlds);
+        writeInts(stream, this.nodeX);
+        writeInts(stream, this.nodeY);
+        writeInts(stream, this.nodeZ);
+        stream.write(this.nodeSwitchers);
+        writeInts(stream, this.nameOffsets);
+        writeInts(stream, this.nameIds);
+        writeInts(stream, this.connOffsets);
+        writeInts(stream, this.connTargets);
+        writeInts(stream, this.connDistances);
+        stream.write(this.connDirections);
+        stream.write(this.connSigns);
+        stream.writeInt(this.unfinished.length);
+        writeInts(stream, this.unfinished);
+        stream.writeInt(this.exploredNodes.length);
+        writeInts(stream, this.exploredNodes);
+        stream.write(this.exploredDirections);
+        for (long[] chunks : this.exploredChunks) {
+            stream.writeInt(chunks.length);
+            for (long chunk : chunks) {
+                stream.writeLong(chunk);
+            }
+        }
+    }
+
+    public int getNodeCount() {
+        return this.nodeWorlds.length;
+    }
+
+    public String getWorld(int node) {
+        return this.strings[this.nodeWorlds[node]];
+    }
+
+    public int getX(int node) {
+        return this.nodeX[node];
+    }
+
+    public int getY(int node) {
+        return this.nodeY[node];
+    }
+
+    public int getZ(int node) {
+        return this.nodeZ[node];
+    }
+
+    /**
+     * Gets the position of the location name among all names of a node,
+     * which is only stored when the node contains a switcher
+     *
+     * @param node index
+     * @return location name position, or -1 if the node contains no switcher
+     */
+    public int getSwitcherPosition(int node) {
+        return this.nodeSwitchers[node];
+    }
+
+    public int getNameCount(int node) {
+        return this.nameOffsets[node + 1] - this.nameOffsets[node];
+    }
+
+    public String getName(int node, int index) {
+        return this.strings[this.nameIds[this.nameOffsets[node] + index]];
+    }
+
+    public int getConnectionStart(int node) {
+        return this.connOffsets[node];
+    }
+
+    public int getConnectionEnd(int node) {
+        return this.connOffsets[node + 1];
+    }
+
+    public int getConnectionTarget(int conn) {
+        return this.connTargets[conn];
+    }
+
+    public int getConnectionDistance(int conn) {
+        return this.connDistances[conn];
+    }
+
+    public BlockFace getConnectionDirection(int conn) {
+        return BlockFace.values()[this.connDirections[conn]];
+    }
+
+    public boolean getConnectionPassesSigns(int conn) {
+        return this.connSigns[conn] != 0;
+    }
+
+    /**
+     * Gets whether the signs passed by connections were stored, which is not the case for older versions
+     *
+     * @return True if the signs passed are known
+     */
+    public boolean isSignsKnown() {
+        return this.signsKnown;
+    }
+
+    public int[] getUnfinished() {
+        return this.unfinished;
+    }
+
+    public int getExploredCount() {
+        return this.exploredNodes.length;
+    }
+
+    public int getExploredNode(int index) {
+        return this.exploredNodes[index];
+    }
+
+    public BlockFace getExploredDirection(int index) {
+        return BlockFace.values()[this.exploredDirections[index]];
+    }
+
+    public long[] getExploredChunks(int index) {
+        return this.exploredChunks[index];
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        } else if (!(o instanceof PathGraphData)) {
+            return false;
+        }
+        PathGraphData other = (PathGraphData) o;
+        return Arrays.equals(this.strings, other.strings) &&
+                Arrays.equals(this.nodeWorlds, other.nodeWorlds) &&
+                Arrays.equals(this.nodeX, other.nodeX) &&
+                Arrays.equals(this.nodeY, other.nodeY) &&
+                Arrays.equals(this.nodeZ, other.nodeZ) &&
+                Arrays.equals(this.nodeSwitchers, other.nodeSwitchers) &&
+                Arrays.equals(this.nameOffsets, other.nameOffsets) &&
+                Arrays.equals(this.nameIds, other.nameIds) &&
+                Arrays.equals(this.connOffsets, other.connOffsets) &&
+                Arrays.equals(this.connTargets, other.connTargets) &&
+                Arrays.equals(this.connDistances, other.connDistances) &&
+                Arrays.equals(this.connDirections, other.connDirections) &&
+                Arrays.equals(this.connSigns, other.connSigns) &&
+                Arrays.equals(this.unfinished, other.unfinished) &&
+                Arrays.equals(this.exploredNodes, other.exploredNodes) &&
+                Arrays.equals(this.exploredDirections, other.exploredDirections) &&
+                Arrays.deepEquals(this.exploredChunks, other.exploredChunks);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.nodeX) ^ Arrays.hashCode(this.connTargets);
+    }
+
+    private static int getStringId(Map<String, Integer> stringIds, List<String> strings, String value) {
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = strings.size();
+            stringIds.put(value, id);
+            strings.add(value);
+        }
+        return id;
+    }
+
+    private static int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+
+    private static int[] readInts(DataInputStream stream, int count) throws IOException {
+        int[] values = new int[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = stream.readInt();
+        }
+        return values;
+    }
+
+    private static void writeInts(DataOutputStream stream, int[] values) throws IOException {
+        for (int value : values) {
+            stream.writeInt(value);
+        }
+    }
+}
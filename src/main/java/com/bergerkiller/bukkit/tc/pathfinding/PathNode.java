@@ -4,39 +4,95 @@ import com.bergerkiller.bukkit.common.BlockLocation;
 import com.bergerkiller.bukkit.common.collections.BlockMap;
 import com.bergerkiller.bukkit.common.collections.BlockSet;
 import com.bergerkiller.bukkit.common.config.CompressedDataReader;
-import com.bergerkiller.bukkit.common.config.CompressedDataWriter;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
-import com.bergerkiller.bukkit.common.utils.StringUtil;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.*;
+import java.util.zip.DeflaterOutputStream;
 
 public class PathNode {
     private static BlockMap<PathNode> blockNodes = new BlockMap<>();
     private static Map<String, PathNode> nodes = new HashMap<>();
+    private static List<PathNode> nodeList = new ArrayList<>();
+    private static Map<Long, Set<PathNode>> exploredChunks = new HashMap<>();
+    private static int graphVersion = 0;
+    private static int changeCount = 0;
+    private static volatile int savedChangeCount = -1;
+    private static volatile PathGraphData lastSaved = null;
     public final BlockLocation location;
-    private final Set<String> names = new HashSet<>();
-    private final List<PathConnection> neighbors = new ArrayList<>(3);
-    public int index;
-    private int lastDistance;
-    private PathConnection lastTaken;
+    private static final String[] NO_NAMES = new String[0];
+    private String[] names = NO_NAMES;
+    private final List<PathNode> incoming = new ArrayList<>(2);
+    private final Map<BlockFace, long[]> explored = new EnumMap<>(BlockFace.class);
+    private PathRoutingTable routingTable = null;
+    public int index = -1;
+    // Slice of the connections of this node in the connection pool
+    int connStart = 0, connCount = 0, connCapacity = 0;
 
     private PathNode(final String name, final BlockLocation location) {
         this.location = location;
         if (!LogicUtil.nullOrEmpty(name)) {
-            LogicUtil.addArray(this.names, name.split("\n", -1));
+            for (String part : name.split("\n", -1)) {
+                this.addNameEntry(part);
+            }
         }
     }
 
     public static void clearAll() {
+        // Nodes may still be referenced elsewhere, make sure they no longer refer to the pool
+        for (PathNode node : nodeList) {
+            node.index = -1;
+            node.connStart = node.connCount = node.connCapacity = 0;
+            node.incoming.clear();
+        }
+        PathConnectionPool.clear();
         nodes.clear();
         blockNodes.clear();
+        nodeList.clear();
+        exploredChunks.clear();
+        graphChanged();
+    }
+
+    /**
+     * Gets the version of the graph of nodes and connections.
+     * The version changes every time a node or connection is added or removed,
+     * which invalidates all routes computed before.
+     *
+     * @return graph version
+     */
+    public static int getGraphVersion() {
+        return graphVersion;
+    }
+
+    private static void graphChanged() {
+        graphVersion++;
+        changeCount++;
+    }
+
+    /**
+     * Marks that something saved with the nodes changed, that does not change the graph itself.
+     * This includes the explored chunks, the names of nodes and the set of unfinished nodes.
+     */
+    static void markChanged() {
+        changeCount++;
+    }
+
+    /**
+     * Gets all nodes, ordered by their index
+     *
+     * @return nodes
+     */
+    static List<PathNode> getNodes() {
+        return nodeList;
     }
 
     /**
@@ -66,6 +122,41 @@ public class PathNode {
         }
     }
 
+    /**
+     * Handles a change of track or signs at a block. Only the connections of which the
+     * explored track passes near the block are removed and discovered again.
+     *
+     * @param block that changed
+     */
+    public static void invalidateTrack(Block block) {
+        Set<Long> keys = new HashSet<>(4);
+        keys.add(MathUtil.longHashToLong(block.getX() >> 4, block.getZ() >> 4));
+        keys.add(MathUtil.longHashToLong((block.getX() - 1) >> 4, block.getZ() >> 4));
+        keys.add(MathUtil.longHashToLong((block.getX() + 1) >> 4, block.getZ() >> 4));
+        keys.add(MathUtil.longHashToLong(block.getX() >> 4, (block.getZ() - 1) >> 4));
+        keys.add(MathUtil.longHashToLong(block.getX() >> 4, (block.getZ() + 1) >> 4));
+        String world = block.getWorld().getName();
+        for (Long key : keys) {
+            Set<PathNode> chunkNodes = exploredChunks.get(key);
+            if (chunkNodes == null) {
+                continue;
+            }
+            for (PathNode node : new ArrayList<>(chunkNodes)) {
+                if (!node.location.world.equals(world)) {
+                    continue;
+                }
+                for (BlockFace direction : new ArrayList<>(node.explored.keySet())) {
+                    if (containsChunk(node.explored.get(direction), key)) {
+                        node.clearExplored(direction);
+                        node.removeNeighbours(direction);
+                        PathProvider.schedule(node, direction);
+                    }
+                }
+            }
+        }
+        PathProvider.restartOperations(block.getWorld(), keys);
+    }
+
     public static PathNode get(Block block) {
         if (block == null) {
             return null;
@@ -137,94 +228,174 @@ public class PathNode {
         return node;
     }
 
-    private static int getDistanceTo(PathConnection from, PathConnection conn, int currentDistance, int maxDistance, PathNode destination) {
-        final PathNode node = conn.destination;
-        currentDistance += conn.distance;
-        // Consider taking turns as one distance longer
-        // This avoids the excessive use of turns in 2-way 'X' intersections
-        if (from.direction != conn.direction) {
-            currentDistance++;
-        }
-        if (destination == node) {
-            return currentDistance;
-        }
-        // Initial distance check before continuing
-        if (node.lastDistance < currentDistance || currentDistance > maxDistance) {
-            return Integer.MAX_VALUE;
-        }
-        node.lastDistance = currentDistance;
-        // Check all neighbors and obtain the lowest distance recursively
-        int distance;
-        for (PathConnection connection : node.neighbors) {
-            distance = getDistanceTo(conn, connection, currentDistance, maxDistance, destination);
-            if (maxDistance > distance) {
-                maxDistance = distance;
-                node.lastTaken = connection;
-            }
-        }
-        return maxDistance;
-    }
-
     public static void deinit() {
+        lastSaved = null;
+        savedChangeCount = -1;
         clearAll();
     }
 
     public static void init(String filename) {
         new CompressedDataReader(filename) {
             public void read(DataInputStream stream) throws IOException {
-                //initializing the nodes
-                int count = stream.readInt();
-                nodes = new HashMap<>(count);
-                blockNodes.clear();
-                PathNode[] parr = new PathNode[count];
-                for (int i = 0; i < count; i++) {
-                    String name = stream.readUTF();
-                    BlockLocation loc = new BlockLocation(stream.readUTF(), stream.readInt(), stream.readInt(), stream.readInt());
-                    if (name.isEmpty()) {
-                        name = loc.toString();
-                    }
-                    parr[i] = new PathNode(name, loc);
-                    parr[i].addToMapping();
-                }
-                //generating connections
-                for (PathNode node : parr) {
-                    int ncount = stream.readInt();
-                    for (int i = 0; i < ncount; i++) {
-                        node.neighbors.add(new PathConnection(parr[stream.readInt()], stream));
-                    }
+                int header = stream.readInt();
+                if (header >= 0) {
+                    readLegacy(stream, header);
+                } else if (-header >= 2 && -header <= PathGraphData.FORMAT_VERSION) {
+                    load(PathGraphData.read(stream, -header));
+                } else {
+                    throw new IOException("Unsupported destinations format version " + (-header));
                 }
             }
         }.read();
     }
 
-    public static void save(String filename) {
-        new CompressedDataWriter(filename) {
-            public void write(DataOutputStream stream) throws IOException {
-                stream.writeInt(nodes.size());
-                //generate indices
-                int i = 0;
-                for (PathNode node : nodes.values()) {
-                    node.index = i;
-                    if (node.containsOnlySwitcher()) {
-                        stream.writeUTF("");
-                    } else {
-                        stream.writeUTF(StringUtil.join("\n", node.names));
-                    }
-                    stream.writeUTF(node.location.world);
-                    stream.writeInt(node.location.x);
-                    stream.writeInt(node.location.y);
-                    stream.writeInt(node.location.z);
-                    i++;
+    private static void resetMapping(int count) {
+        nodes = new HashMap<>(count);
+        blockNodes.clear();
+        nodeList = new ArrayList<>(count);
+        exploredChunks.clear();
+        graphChanged();
+    }
+
+    /**
+     * Loads all nodes and connections from graph data, replacing the current nodes
+     *
+     * @param data to load
+     */
+    private static void load(PathGraphData data) {
+        final int count = data.getNodeCount();
+        resetMapping(count);
+        PathNode[] parr = new PathNode[count];
+        for (int i = 0; i < count; i++) {
+            BlockLocation loc = new BlockLocation(data.getWorld(i), data.getX(i), data.getY(i), data.getZ(i));
+            PathNode node = new PathNode(null, loc);
+            int switcherPosition = data.getSwitcherPosition(i);
+            for (int j = 0; j < data.getNameCount(i); j++) {
+                if (j == switcherPosition) {
+                    node.addNameEntry(loc.toString());
                 }
-                //write out connections
-                for (PathNode node : nodes.values()) {
-                    stream.writeInt(node.neighbors.size());
-                    for (PathConnection conn : node.neighbors) {
-                        conn.writeTo(stream);
+                node.addNameEntry(data.getName(i, j));
+            }
+            if (switcherPosition >= data.getNameCount(i)) {
+                node.addNameEntry(loc.toString());
+            }
+            node.addToMapping();
+            parr[i] = node;
+        }
+        for (int i = 0; i < count; i++) {
+            PathNode node = parr[i];
+            for (int c = data.getConnectionStart(i); c < data.getConnectionEnd(i); c++) {
+                PathNode to = parr[data.getConnectionTarget(c)];
+                PathConnectionPool.add(node, to, data.getConnectionDistance(c), data.getConnectionDirection(c),
+                        data.getConnectionPassesSigns(c));
+                to.incoming.add(node);
+            }
+        }
+        graphChanged();
+        for (int index : data.getUnfinished()) {
+            PathProvider.schedule(parr[index]);
+        }
+        if (!data.isSignsKnown()) {
+            // Discover all nodes again to find out which connections pass signs
+            for (PathNode node : parr) {
+                PathProvider.schedule(node);
+            }
+        }
+        for (int i = 0; i < data.getExploredCount(); i++) {
+            parr[data.getExploredNode(i)].setExplored(data.getExploredDirection(i), data.getExploredChunks(i));
+        }
+    }
+
+    /**
+     * Reads the nodes from a file written before the format was versioned
+     */
+    private static void readLegacy(DataInputStream stream, int count) throws IOException {
+        //initializing the nodes
+        resetMapping(count);
+        PathNode[] parr = new PathNode[count];
+        for (int i = 0; i < count; i++) {
+            String name = stream.readUTF();
+            BlockLocation loc = new BlockLocation(stream.readUTF(), stream.readInt(), stream.readInt(), stream.readInt());
+            if (name.isEmpty()) {
+                name = loc.toString();
+            }
+            parr[i] = new PathNode(name, loc);
+            parr[i].addToMapping();
+        }
+        //generating connections
+        for (PathNode node : parr) {
+            int ncount = stream.readInt();
+            for (int i = 0; i < ncount; i++) {
+                PathNode to = parr[stream.readInt()];
+                PathConnection conn = new PathConnection(to, stream);
+                PathConnectionPool.add(node, to, conn.distance, conn.direction, true);
+                to.incoming.add(node);
+                graphChanged();
+            }
+        }
+        // Discover all nodes again to find out which connections pass signs
+        for (PathNode node : parr) {
+            PathProvider.schedule(node);
+        }
+        try {
+            //continue discovery of nodes that were unfinished
+            int unfinishedCount = stream.readInt();
+            for (int i = 0; i < unfinishedCount; i++) {
+                PathProvider.schedule(parr[stream.readInt()]);
+            }
+            //chunks passed by the track explored from every node
+            int exploredCount = stream.readInt();
+            for (int i = 0; i < exploredCount; i++) {
+                PathNode node = parr[stream.readInt()];
+                int dirCount = stream.readUnsignedByte();
+                for (int j = 0; j < dirCount; j++) {
+                    BlockFace direction = BlockFace.values()[stream.readUnsignedByte()];
+                    long[] chunks = new long[stream.readInt()];
+                    for (int k = 0; k < chunks.length; k++) {
+                        chunks[k] = stream.readLong();
                     }
+                    node.setExplored(direction, chunks);
                 }
             }
-        }.write();
+        } catch (EOFException ex) {
+            // Older files end after the connections
+        }
+    }
+
+    /**
+     * Saves all nodes to file. The nodes are copied on the calling thread, after which
+     * the file is written in the background. Nothing is copied when nothing was changed
+     * since the last save, and nothing is written when the changes cancelled out.
+     *
+     * @param filename to save to
+     */
+    public static void save(String filename) {
+        final int changes = changeCount;
+        if (changes == savedChangeCount) {
+            return;
+        }
+        final PathGraphData data = PathGraphData.capture(nodeList, PathProvider.getUnfinishedNodes());
+        if (data.equals(lastSaved)) {
+            savedChangeCount = changes;
+            return;
+        }
+        SaveQueue.submit(filename, new SaveQueue.Snapshot() {
+            @Override
+            public void write(DataOutputStream stream) throws IOException {
+                DeflaterOutputStream compressed = new DeflaterOutputStream(stream);
+                DataOutputStream out = new DataOutputStream(compressed);
+                out.writeInt(-PathGraphData.FORMAT_VERSION);
+                data.write(out);
+                out.flush();
+                compressed.finish();
+            }
+
+            @Override
+            public void saved() {
+                lastSaved = data;
+                savedChangeCount = changes;
+            }
+        });
     }
 
     /**
@@ -245,25 +416,31 @@ public class PathNode {
      * @return A connection, or null if none could be found
      */
     public PathConnection findConnection(PathNode destination) {
-        for (PathNode node : nodes.values()) {
-            node.lastDistance = Integer.MAX_VALUE;
-            node.lastTaken = null;
-        }
-        int maxDistance = Integer.MAX_VALUE;
-        int distance;
-        final PathConnection from = new PathConnection(this, 0, BlockFace.SELF);
-        for (PathConnection connection : this.neighbors) {
-            distance = getDistanceTo(from, connection, 0, maxDistance, destination);
-            if (maxDistance > distance) {
-                maxDistance = distance;
-                this.lastTaken = connection;
-            }
-        }
-        if (this.lastTaken == null) {
+        int first = findNextConnection(destination);
+        if (first == -1) {
             return null;
-        } else {
-            return new PathConnection(destination, maxDistance, this.lastTaken.direction);
         }
+        return new PathConnection(destination, destination.routingTable.getDistance(this), this.getConnectionDirection(first));
+    }
+
+    /**
+     * Finds the connection of this node to take first to reach a destination
+     *
+     * @param destination node to find
+     * @return index of the connection, or -1 if the destination can not be reached
+     */
+    int findNextConnection(PathNode destination) {
+        // Routing tables towards the destination are computed once and re-used until the graph changes
+        PathRoutingTable table = destination.routingTable;
+        if (table == null || !table.isValid()) {
+            destination.routingTable = table = PathRoutingTable.compute(destination);
+        }
+        int index = table.getConnection(this);
+        if (index == PathRoutingTable.USE_SEARCH) {
+            PathSearch search = new PathSearch(this, destination);
+            return search.run() ? search.getFirstConnectionIndex() : -1;
+        }
+        return index;
     }
 
     /**
@@ -273,56 +450,218 @@ public class PathNode {
      * @return the route taken, or an empty array if none could be found
      */
     public PathNode[] findRoute(PathNode destination) {
-        if (findConnection(destination) == null) {
+        PathSearch search = new PathSearch(this, destination);
+        if (!search.run()) {
             return new PathNode[0];
         }
-        List<PathNode> route = new ArrayList<>();
-        route.add(this);
-        PathConnection conn = this.lastTaken;
-        while (conn != null) {
-            route.add(conn.destination);
-            conn = conn.destination.lastTaken;
+        return search.getRoute();
+    }
+
+    /**
+     * Gets all names of this node, including the location name of a switcher
+     *
+     * @return names
+     */
+    String[] getNames() {
+        return this.names;
+    }
+
+    /**
+     * Gets the chunks passed by the track explored from this node, per direction
+     *
+     * @return explored chunks
+     */
+    Map<BlockFace, long[]> getExplored() {
+        return this.explored;
+    }
+
+    /**
+     * Gets the amount of connections leading away from this node
+     *
+     * @return connection count
+     */
+    int getConnectionCount() {
+        return this.connCount;
+    }
+
+    /**
+     * Gets the slot in the connection pool of a connection leading away from this node
+     *
+     * @param index of the connection
+     * @return connection pool slot
+     */
+    int getConnectionSlot(int index) {
+        return this.connStart + index;
+    }
+
+    PathNode getConnectionTarget(int index) {
+        return PathConnectionPool.getTarget(this.connStart + index);
+    }
+
+    int getConnectionDistance(int index) {
+        return PathConnectionPool.getDistance(this.connStart + index);
+    }
+
+    BlockFace getConnectionDirection(int index) {
+        return PathConnectionPool.getDirection(this.connStart + index);
+    }
+
+    /**
+     * Gets whether the track of a connection leading away from this node passes signs,
+     * other than the signs of this node and the node it leads to
+     *
+     * @param index of the connection
+     * @return True if other signs are passed, or if this is not known
+     */
+    boolean getConnectionPassesSigns(int index) {
+        return PathConnectionPool.passesSigns(this.connStart + index);
+    }
+
+    /**
+     * Gets a connection leading away from this node
+     *
+     * @param index of the connection
+     * @return connection
+     */
+    public PathConnection getConnection(int index) {
+        int slot = this.connStart + index;
+        return new PathConnection(PathConnectionPool.getTarget(slot), PathConnectionPool.getDistance(slot), PathConnectionPool.getDirection(slot));
+    }
+
+    private int indexOfConnection(PathNode to, BlockFace direction) {
+        for (int i = 0; i < this.connCount; i++) {
+            if (PathConnectionPool.getTarget(this.connStart + i) == to && PathConnectionPool.getDirection(this.connStart + i) == direction) {
+                return i;
+            }
         }
-        return route.toArray(new PathNode[0]);
+        return -1;
     }
 
     /**
-     * Adds a neighbour connection to this node
+     * Adds a neighbour connection to this node. A node can be connected to the same node
+     * into multiple directions, so that when the track into one direction breaks, the
+     * connection into the other directions remains.
      *
      * @param to        the node to make a connection with
      * @param distance  of the connection
      * @param direction of the connection
+     * @param passesSigns whether the track of the connection passes signs other than those of the nodes
      * @return The connection that was made
      */
-    public PathConnection addNeighbour(final PathNode to, final int distance, final BlockFace direction) {
-        PathConnection conn;
-        Iterator<PathConnection> iter = this.neighbors.iterator();
-        while (iter.hasNext()) {
-            conn = iter.next();
-            if (conn.destination == to) {
-                if (conn.distance <= distance) {
-                    // Lower distance is contained - all done
-                    return conn;
-                } else {
-                    // Higher distance is contained - remove old element
-                    iter.remove();
-                    break;
-                }
+    public PathConnection addNeighbour(final PathNode to, final int distance, final BlockFace direction, final boolean passesSigns) {
+        int existing = this.indexOfConnection(to, direction);
+        if (existing != -1) {
+            int existingDistance = this.getConnectionDistance(existing);
+            if (existingDistance == distance && this.getConnectionPassesSigns(existing) != passesSigns) {
+                // Same track discovered again, the signs along it changed
+                PathConnectionPool.setPassesSigns(this, existing, passesSigns);
+                markChanged();
+            }
+            if (existingDistance <= distance) {
+                // Lower distance is contained - all done
+                return this.getConnection(existing);
+            } else {
+                // Higher distance is contained - remove old element
+                PathConnectionPool.remove(this, existing);
             }
+        } else {
+            to.incoming.add(this);
         }
         // Add a new one
-        conn = new PathConnection(to, distance, direction);
-        this.neighbors.add(conn);
-        return conn;
+        PathConnectionPool.add(this, to, distance, direction, passesSigns);
+        graphChanged();
+        return new PathConnection(to, distance, direction);
     }
 
+    /**
+     * Removes all connections leading away from this node into a direction
+     *
+     * @param direction of the connections to remove
+     */
+    void removeNeighbours(BlockFace direction) {
+        for (int i = this.connCount - 1; i >= 0; i--) {
+            if (this.getConnectionDirection(i) == direction) {
+                this.getConnectionTarget(i).incoming.remove(this);
+                PathConnectionPool.remove(this, i);
+                graphChanged();
+            }
+        }
+    }
+
+    /**
+     * Removes all connections leading away from and into this node
+     */
     public void clear() {
-        this.neighbors.clear();
-        for (PathNode node : nodes.values()) {
-            Iterator<PathConnection> iter = node.neighbors.iterator();
-            while (iter.hasNext()) {
-                if (iter.next().destination == this) {
-                    iter.remove();
+        for (int i = 0; i < this.connCount; i++) {
+            this.getConnectionTarget(i).incoming.remove(this);
+        }
+        PathConnectionPool.release(this);
+        for (PathNode node : this.incoming) {
+            for (int i = node.connCount - 1; i >= 0; i--) {
+                if (node.getConnectionTarget(i) == this) {
+                    PathConnectionPool.remove(node, i);
+                }
+            }
+        }
+        this.incoming.clear();
+        for (BlockFace direction : new ArrayList<>(this.explored.keySet())) {
+            this.clearExplored(direction);
+        }
+        graphChanged();
+    }
+
+    /**
+     * Stores the chunks passed by the track explored from this node into a direction.
+     * When track or signs in these chunks change, the direction is explored again.
+     *
+     * @param direction that was explored
+     * @param chunks passed, as chunk coordinate keys
+     */
+    void setExplored(BlockFace direction, long[] chunks) {
+        if (this.index == -1) {
+            return; // Node was removed in the meantime
+        }
+        this.clearExplored(direction);
+        this.explored.put(direction, chunks);
+        markChanged();
+        for (long chunk : chunks) {
+            Set<PathNode> chunkNodes = exploredChunks.get(chunk);
+            if (chunkNodes == null) {
+                chunkNodes = new HashSet<>(4);
+                exploredChunks.put(chunk, chunkNodes);
+            }
+            chunkNodes.add(this);
+        }
+    }
+
+    private static boolean containsChunk(long[] chunks, long chunk) {
+        for (long value : chunks) {
+            if (value == chunk) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void clearExplored(BlockFace direction) {
+        long[] chunks = this.explored.remove(direction);
+        if (chunks == null) {
+            return;
+        }
+        markChanged();
+        for (long chunk : chunks) {
+            boolean stillExplored = false;
+            for (long[] other : this.explored.values()) {
+                if (containsChunk(other, chunk)) {
+                    stillExplored = true;
+                    break;
+                }
+            }
+            Set<PathNode> chunkNodes = exploredChunks.get(chunk);
+            if (!stillExplored && chunkNodes != null) {
+                chunkNodes.remove(this);
+                if (chunkNodes.isEmpty()) {
+                    exploredChunks.remove(chunk);
                 }
             }
         }
@@ -335,18 +674,24 @@ public class PathNode {
      * @param name to remove
      */
     public void removeName(String name) {
-        if (!this.names.remove(name)) {
+        int index = this.indexOfName(name);
+        if (index == -1) {
             return;
         }
+        String[] newNames = new String[this.names.length - 1];
+        System.arraycopy(this.names, 0, newNames, 0, index);
+        System.arraycopy(this.names, index + 1, newNames, index, newNames.length - index);
+        this.names = newNames;
         nodes.remove(name);
+        markChanged();
         if (PathProvider.DEBUG_MODE) {
             String dbg = "NODE " + location + " NO LONGER HAS NAME " + name;
-            if (this.names.isEmpty()) {
+            if (this.names.length == 0) {
                 dbg += " AND IS NOW BEING REMOVED (NO NAMES)";
             }
             System.out.println(dbg);
         }
-        if (this.names.isEmpty()) {
+        if (this.names.length == 0) {
             this.remove();
         }
     }
@@ -361,6 +706,15 @@ public class PathNode {
             nodes.remove(name);
         }
         blockNodes.remove(this.location);
+        //remove from the node list, moving the last node in its place
+        if (this.index >= 0 && this.index < nodeList.size() && nodeList.get(this.index) == this) {
+            PathNode last = nodeList.remove(nodeList.size() - 1);
+            if (last != this) {
+                nodeList.set(this.index, last);
+                last.index = this.index;
+            }
+            this.index = -1;
+        }
     }
 
     /**
@@ -370,7 +724,16 @@ public class PathNode {
      * @return True if the name is contained, False if not
      */
     public boolean containsName(String name) {
-        return this.names.contains(name);
+        return this.indexOfName(name) != -1;
+    }
+
+    private int indexOfName(String name) {
+        for (int i = 0; i < this.names.length; i++) {
+            if (this.names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -380,7 +743,7 @@ public class PathNode {
      * @return True if only a switcher sign is contained, False if not
      */
     public boolean containsOnlySwitcher() {
-        return this.names.size() == 1 && this.containsSwitcher();
+        return this.names.length == 1 && this.containsSwitcher();
     }
 
     /**
@@ -389,7 +752,32 @@ public class PathNode {
      * @return True if a switcher sign is contained, False if not
      */
     public boolean containsSwitcher() {
-        return this.names.contains(this.location.toString());
+        return this.containsName(this.location.toString());
+    }
+
+    /**
+     * Checks whether this node only contains a switcher, and is not a destination
+     *
+     * @return True if this node is a switcher without destination names
+     */
+    public boolean isSwitcherOnly() {
+        return this.names.length == 1 && this.containsSwitcher();
+    }
+
+    /**
+     * Checks whether the track taken from this node to a neighbouring node along a route
+     * passes signs other than those of the two nodes. Signs on the same rail as the
+     * neighbouring node, besides its switcher or destination sign, count as passed.
+     *
+     * @param next node along the route, connected to this node
+     * @return True if other signs are passed, or if this is not known
+     */
+    public boolean passesSignsTo(PathNode next) {
+        int index = this.findNextConnection(next);
+        if (index == -1 || this.getConnectionTarget(index) != next) {
+            return true;
+        }
+        return this.getConnectionPassesSigns(index);
     }
 
     /**
@@ -399,10 +787,10 @@ public class PathNode {
      * @return Reverse-lookup-able Node name
      */
     public String getName() {
-        if (this.names.isEmpty()) {
+        if (this.names.length == 0) {
             return null;
         } else {
-            return this.names.iterator().next();
+            return this.names[0];
         }
     }
 
@@ -415,18 +803,18 @@ public class PathNode {
     public String getDisplayName() {
         String locDName = "[" + this.location.x + "/" + this.location.y + "/" + this.location.z + "]";
         // No name at all - use location as name
-        if (this.names.isEmpty()) {
+        if (this.names.length == 0) {
             return locDName;
         }
 
         // Get all names except the location name
         String locName = this.location.toString();
-        if (this.names.size() == 1) {
+        if (this.names.length == 1) {
             // Show this one name
-            return this.names.iterator().next().replace(locName, locDName);
+            return this.names[0].replace(locName, locDName);
         } else {
             // Show a list of names
-            StringBuilder builder = new StringBuilder(this.names.size() * 15);
+            StringBuilder builder = new StringBuilder(this.names.length * 15);
             builder.append('{');
             for (String name : this.names) {
                 if (builder.length() > 1) {
@@ -445,9 +833,19 @@ public class PathNode {
     }
 
     public void addName(String name) {
-        if (this.names.add(name)) {
+        if (this.addNameEntry(name)) {
             nodes.put(name, this);
+            markChanged();
+        }
+    }
+
+    private boolean addNameEntry(String name) {
+        if (this.containsName(name)) {
+            return false;
         }
+        this.names = Arrays.copyOf(this.names, this.names.length + 1);
+        this.names[this.names.length - 1] = name;
+        return true;
     }
 
     private void addToMapping() {
@@ -455,5 +853,8 @@ public class PathNode {
             nodes.put(name, this);
         }
         blockNodes.put(this.location, this);
+        this.index = nodeList.size();
+        nodeList.add(this);
+        graphChanged();
     }
 }
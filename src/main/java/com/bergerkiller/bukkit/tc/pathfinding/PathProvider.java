@@ -3,21 +3,33 @@ package com.bergerkiller.bukkit.tc.pathfinding;
 import com.bergerkiller.bukkit.common.BlockLocation;
 import com.bergerkiller.bukkit.common.Task;
 import com.bergerkiller.bukkit.common.utils.FaceUtil;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.rails.type.RailType;
 import com.bergerkiller.bukkit.tc.signactions.SignActionMode;
 import com.bergerkiller.bukkit.tc.utils.TrackIterator;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
-import java.util.Queue;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.logging.Level;
 
 public class PathProvider extends Task {
     private static final int STEP_COUNT = 100; // Steps performed per timing check
@@ -25,7 +37,15 @@ public class PathProvider extends Task {
     public static boolean DEBUG_MODE = false;
     private static PathProvider task;
     private Set<PathNode> pendingNodes = new LinkedHashSet<>();
-    private Queue<PathFindOperation> pendingOperations = new LinkedList<>();
+    private LinkedList<PathFindOperation> pendingOperations = new LinkedList<>();
+    private Map<Long, List<PathFindOperation>> waitingOperations = new HashMap<>();
+    private Map<Long, List<WaitingNode>> waitingNodes = new HashMap<>();
+    private Map<PathNode, Set<BlockFace>> pendingDirections = new LinkedHashMap<>();
+    // Pending nodes per start node and destination, valid while no active node and no connection changes
+    private Map<PathNode, Map<String, Set<PathNode>>> pendingNodesCache = new HashMap<>();
+    private int activeVersion = 0;
+    private int cacheActiveVersion = -1;
+    private int cacheGraphVersion = -1;
 
     private PathProvider(JavaPlugin plugin) {
         super(plugin);
@@ -50,8 +70,58 @@ public class PathProvider extends Task {
      * @param startNode to schedule
      */
     public static void schedule(PathNode startNode) {
+        if (task != null && task.pendingNodes.add(startNode)) {
+            task.activeChanged();
+        }
+    }
+
+    /**
+     * Tells this Path Provider to start calculating the neighboring paths from the node specified
+     * into a single direction
+     *
+     * @param startNode to schedule
+     * @param direction to discover
+     */
+    public static void schedule(PathNode startNode, BlockFace direction) {
         if (task != null) {
-            task.pendingNodes.add(startNode);
+            Set<BlockFace> directions = task.pendingDirections.get(startNode);
+            if (directions == null) {
+                directions = EnumSet.noneOf(BlockFace.class);
+                task.pendingDirections.put(startNode, directions);
+            }
+            directions.add(direction);
+            task.activeChanged();
+        }
+    }
+
+    /**
+     * Restarts the operations that passed through chunks of which the track changed
+     *
+     * @param world the chunks are in
+     * @param chunks that changed, as chunk coordinate keys
+     */
+    public static void restartOperations(World world, Set<Long> chunks) {
+        if (task == null) {
+            return;
+        }
+        Iterator<PathFindOperation> iter = task.pendingOperations.iterator();
+        while (iter.hasNext()) {
+            PathFindOperation operation = iter.next();
+            if (operation.getWorld() == world && operation.passesChunks(chunks)) {
+                iter.remove();
+                task.activeChanged();
+                schedule(operation.startNode, operation.startDir);
+            }
+        }
+        for (List<PathFindOperation> operations : task.waitingOperations.values()) {
+            iter = operations.iterator();
+            while (iter.hasNext()) {
+                PathFindOperation operation = iter.next();
+                if (operation.getWorld() == world && operation.passesChunks(chunks)) {
+                    iter.remove();
+                    schedule(operation.startNode, operation.startDir);
+                }
+            }
         }
     }
 
@@ -65,28 +135,221 @@ public class PathProvider extends Task {
     public static void schedule(PathNode startNode, Block startBlock, BlockFace startDirection) {
         if (task != null) {
             task.pendingOperations.offer(new PathFindOperation(startNode, startBlock, startDirection));
+            task.activeChanged();
         }
     }
 
     /**
-     * Checks whether this Path Provider is currently busy processing path finding
+     * Checks whether this Path Provider is currently busy processing path finding.
+     * Operations waiting for a chunk to load are not included, as they can not make progress.
      *
      * @return True if processing is being performed, False if not
      */
     public static boolean isProcessing() {
-        return task != null && (!task.pendingOperations.isEmpty() || !task.pendingNodes.isEmpty());
+        return task != null && (!task.pendingOperations.isEmpty() || !task.pendingNodes.isEmpty() || !task.pendingDirections.isEmpty());
     }
 
-    @Override
-    public Task stop() {
-        addPendingNodes();
-        if (!this.pendingOperations.isEmpty()) {
-            TrainCarts.plugin.log(Level.INFO, "Performing " + this.pendingOperations.size() + " pending path finding operations (can take a while)...");
-            while (!this.pendingOperations.isEmpty()) {
-                PathFindOperation operation = this.pendingOperations.poll();
-                while (operation.next()) ;
+    /**
+     * Gets the nodes still being discovered that can affect the route from a node to a destination.
+     * When a route is known, these are the nodes along it that are still being discovered.
+     * When no route is known yet, these are all nodes reachable from the node that are still
+     * being discovered, as any of them can lead to the destination.
+     * Discovery waiting for a chunk to load is not included. The result is re-used until the
+     * nodes being discovered or the connections change, and can not be modified.
+     *
+     * @param from node to start the route at
+     * @param destination name of the destination
+     * @return nodes still being discovered, empty if the route can be trusted
+     */
+    public static Set<PathNode> getPendingNodes(PathNode from, String destination) {
+        if (!isProcessing()) {
+            return Collections.emptySet();
+        }
+        // Many trains ask every tick, while the nodes being discovered change far less often
+        if (task.cacheActiveVersion != task.activeVersion || task.cacheGraphVersion != PathNode.getGraphVersion()) {
+            task.pendingNodesCache.clear();
+            task.cacheActiveVersion = task.activeVersion;
+            task.cacheGraphVersion = PathNode.getGraphVersion();
+        }
+        Map<String, Set<PathNode>> cached = task.pendingNodesCache.get(from);
+        if (cached == null) {
+            cached = new HashMap<>();
+            task.pendingNodesCache.put(from, cached);
+        }
+        Set<PathNode> result = cached.get(destination);
+        if (result == null) {
+            result = Collections.unmodifiableSet(task.findPendingNodes(from, destination));
+            cached.put(destination, result);
+        }
+        return result;
+    }
+
+    private Set<PathNode> findPendingNodes(PathNode from, String destination) {
+        Set<PathNode> result = new LinkedHashSet<>();
+        Set<PathNode> active = this.getActiveNodes();
+        PathNode to = PathNode.get(destination);
+        if (to != null) {
+            PathNode[] route = from.findRoute(to);
+            if (route.length > 0) {
+                for (PathNode node : route) {
+                    if (active.contains(node)) {
+                        result.add(node);
+                    }
+                }
+                return result;
+            }
+        }
+        Set<PathNode> reached = new HashSet<>();
+        LinkedList<PathNode> open = new LinkedList<>();
+        reached.add(from);
+        open.add(from);
+        while (!open.isEmpty()) {
+            PathNode node = open.poll();
+            if (active.contains(node)) {
+                result.add(node);
+            }
+            for (int i = 0; i < node.getConnectionCount(); i++) {
+                PathNode next = node.getConnectionTarget(i);
+                if (reached.add(next)) {
+                    open.add(next);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Moves the discovery of the nodes specified ahead of all other discovery
+     *
+     * @param nodes to discover first
+     */
+    public static void prioritize(Collection<PathNode> nodes) {
+        if (task == null || nodes.isEmpty()) {
+            return;
+        }
+        LinkedList<PathFindOperation> first = new LinkedList<>();
+        Iterator<PathFindOperation> iter = task.pendingOperations.iterator();
+        while (iter.hasNext()) {
+            PathFindOperation operation = iter.next();
+            if (nodes.contains(operation.startNode)) {
+                iter.remove();
+                first.add(operation);
+            }
+        }
+        for (PathNode node : nodes) {
+            if (task.pendingNodes.remove(node)) {
+                task.addNode(node, first);
+                task.pendingDirections.remove(node);
+            } else {
+                Set<BlockFace> directions = task.pendingDirections.remove(node);
+                if (directions != null) {
+                    task.addDirections(node, directions, first);
+                }
+            }
+        }
+        task.pendingOperations.addAll(0, first);
+        task.activeChanged();
+    }
+
+    private void activeChanged() {
+        this.activeVersion++;
+        PathNode.markChanged(); // Unfinished nodes are saved
+    }
+
+    private Set<PathNode> getActiveNodes() {
+        Set<PathNode> result = new HashSet<>(this.pendingNodes);
+        result.addAll(this.pendingDirections.keySet());
+        for (PathFindOperation operation : this.pendingOperations) {
+            result.add(operation.startNode);
+        }
+        return result;
+    }
+
+    /**
+     * Gets all nodes of which the neighbouring paths are not yet completely discovered.
+     * These are saved with the nodes, so discovery can continue after a restart.
+     *
+     * @return unfinished nodes
+     */
+    public static Collection<PathNode> getUnfinishedNodes() {
+        Set<PathNode> result = new LinkedHashSet<>();
+        if (task != null) {
+            result.addAll(task.pendingNodes);
+            result.addAll(task.pendingDirections.keySet());
+            for (PathFindOperation operation : task.pendingOperations) {
+                result.add(operation.startNode);
+            }
+            for (List<PathFindOperation> operations : task.waitingOperations.values()) {
+                for (PathFindOperation operation : operations) {
+                    result.add(operation.startNode);
+                }
+            }
+            for (List<WaitingNode> nodes : task.waitingNodes.values()) {
+                for (WaitingNode waiting : nodes) {
+                    result.add(waiting.node);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Resumes the path finding operations that were waiting for a chunk to load
+     *
+     * @param chunk that was loaded
+     */
+    public static void onChunkLoad(Chunk chunk) {
+        if (task == null) {
+            return;
+        }
+        Long key = MathUtil.longHashToLong(chunk.getX(), chunk.getZ());
+        List<WaitingNode> nodes = task.waitingNodes.get(key);
+        if (nodes != null) {
+            String worldName = chunk.getWorld().getName();
+            Iterator<WaitingNode> iter = nodes.iterator();
+            while (iter.hasNext()) {
+                WaitingNode waiting = iter.next();
+                if (waiting.node.location.world.equals(worldName)) {
+                    iter.remove();
+                    if (waiting.direction == null) {
+                        schedule(waiting.node);
+                    } else {
+                        schedule(waiting.node, waiting.direction);
+                    }
+                }
+            }
+            if (nodes.isEmpty()) {
+                task.waitingNodes.remove(key);
             }
         }
+        List<PathFindOperation> operations = task.waitingOperations.get(key);
+        if (operations == null) {
+            return;
+        }
+        Iterator<PathFindOperation> iter = operations.iterator();
+        while (iter.hasNext()) {
+            PathFindOperation operation = iter.next();
+            if (operation.getWorld() == chunk.getWorld()) {
+                iter.remove();
+                task.pendingOperations.offer(operation);
+                task.activeChanged();
+            }
+        }
+        if (operations.isEmpty()) {
+            task.waitingOperations.remove(key);
+        }
+    }
+
+    @Override
+    public Task stop() {
+        // Unfinished operations are not completed here, they are saved and continued next time
+        this.pendingOperations.clear();
+        this.waitingOperations.clear();
+        this.waitingNodes.clear();
+        this.pendingNodes.clear();
+        this.pendingDirections.clear();
+        this.pendingNodesCache.clear();
+        this.activeChanged();
         return super.stop();
     }
 
@@ -112,11 +375,30 @@ public class PathProvider extends Task {
             // Not per step, because System.currentTimeMillis is not entirely cheap!
             do {
                 for (i = 0; i < STEP_COUNT && !done; i++) {
+                    if (!operation.isNextLoaded()) {
+                        break;
+                    }
                     done = operation.next();
                 }
-            } while (!done && (System.currentTimeMillis() - startTime) <= MAX_PROCESSING_PER_TICK);
+            } while (!done && operation.isNextLoaded() && (System.currentTimeMillis() - startTime) <= MAX_PROCESSING_PER_TICK);
             if (done) {
                 this.pendingOperations.poll();
+                this.activeChanged();
+                operation.startNode.setExplored(operation.startDir, operation.getChunks());
+            } else if (!operation.isNextLoaded()) {
+                // Wait for the chunk to be loaded instead of loading it
+                this.pendingOperations.poll();
+                this.activeChanged();
+                Long key = operation.getNextChunkKey();
+                List<PathFindOperation> operations = this.waitingOperations.get(key);
+                if (operations == null) {
+                    operations = new ArrayList<>(1);
+                    this.waitingOperations.put(key, operations);
+                }
+                operations.add(operation);
+                if (DEBUG_MODE) {
+                    System.out.println("DISCOVERY FROM " + operation.startNode.getDisplayName() + " WAITS FOR A CHUNK TO LOAD");
+                }
             } else {
                 break; // Ran out of time
             }
@@ -124,39 +406,101 @@ public class PathProvider extends Task {
     }
 
     private void addPendingNodes() {
+        if (!this.pendingDirections.isEmpty()) {
+            this.activeChanged();
+            for (Map.Entry<PathNode, Set<BlockFace>> entry : this.pendingDirections.entrySet()) {
+                if (!this.pendingNodes.contains(entry.getKey())) {
+                    addDirections(entry.getKey(), entry.getValue(), this.pendingOperations);
+                }
+            }
+            this.pendingDirections.clear();
+        }
         if (!this.pendingNodes.isEmpty()) {
+            this.activeChanged();
             for (PathNode node : this.pendingNodes) {
-                Block startRail = node.location.getBlock();
-                RailType startType = RailType.getType(startRail);
-                if (startType == RailType.NONE) {
-                    // Track type can not be identified
-                    continue;
-                }
-                if (node.containsSwitcher()) {
-                    if (DEBUG_MODE) {
-                        System.out.println("NODE " + node.getDisplayName() + " CONTAINS A SWITCHER");
-                    }
-                    // Check north-east-south-west for possible routes
-                    for (BlockFace dir : FaceUtil.AXIS) {
-                        scheduleNode(node, startType.findMinecartPos(startRail).getRelative(dir), dir);
-                    }
-                } else {
-                    // Only check available routes
-                    for (BlockFace dir : startType.getPossibleDirections(startRail)) {
-                        scheduleNode(node, startType.getNextPos(startRail, dir), dir);
-                    }
-                }
+                addNode(node, this.pendingOperations);
             }
             this.pendingNodes.clear();
         }
     }
 
-    private void scheduleNode(PathNode node, Block startBlock, BlockFace direction) {
+    private void addNode(PathNode node, List<PathFindOperation> operations) {
+        World world = Bukkit.getWorld(node.location.world);
+        if (world == null) {
+            return;
+        }
+        if (!isLoaded(world, node.location.x, node.location.z)) {
+            // Discover all directions once the chunk of the node is loaded
+            waitForChunk(node, null, node.location.x, node.location.z);
+            return;
+        }
+        Block startRail = node.location.getBlock();
+        RailType startType = RailType.getType(startRail);
+        if (startType == RailType.NONE) {
+            // Track type can not be identified
+            return;
+        }
+        if (node.containsSwitcher()) {
+            if (DEBUG_MODE) {
+                System.out.println("NODE " + node.getDisplayName() + " CONTAINS A SWITCHER");
+            }
+            // Check north-east-south-west for possible routes
+            for (BlockFace dir : FaceUtil.AXIS) {
+                addDirection(node, startRail, startType, dir, operations);
+            }
+        } else {
+            // Only check available routes
+            for (BlockFace dir : startType.getPossibleDirections(startRail)) {
+                addDirection(node, startRail, startType, dir, operations);
+            }
+        }
+    }
+
+    private void addDirections(PathNode node, Set<BlockFace> directions, List<PathFindOperation> operations) {
+        if (node.index == -1) {
+            return; // Node was removed in the meantime
+        }
+        World world = Bukkit.getWorld(node.location.world);
+        if (world == null) {
+            return;
+        }
+        if (!isLoaded(world, node.location.x, node.location.z)) {
+            for (BlockFace dir : directions) {
+                waitForChunk(node, dir, node.location.x, node.location.z);
+            }
+            return;
+        }
+        Block startRail = node.location.getBlock();
+        RailType startType = RailType.getType(startRail);
+        if (startType != RailType.NONE) {
+            for (BlockFace dir : directions) {
+                addDirection(node, startRail, startType, dir, operations);
+            }
+        }
+    }
+
+    private void addDirection(PathNode node, Block startRail, RailType startType, BlockFace direction, List<PathFindOperation> operations) {
+        // The first step moves one block into the direction, which can cross into a chunk not yet loaded
+        int nextX = startRail.getX() + direction.getModX();
+        int nextZ = startRail.getZ() + direction.getModZ();
+        if (!isLoaded(startRail.getWorld(), nextX, nextZ)) {
+            waitForChunk(node, direction, nextX, nextZ);
+            return;
+        }
+        Block startBlock;
+        if (node.containsSwitcher()) {
+            startBlock = startType.findMinecartPos(startRail).getRelative(direction);
+        } else {
+            startBlock = startType.getNextPos(startRail, direction);
+        }
+        if (startBlock == null) {
+            return;
+        }
         for (RailType nextType : RailType.values()) {
             try {
-                Block startRail = nextType.findRail(startBlock);
-                if (startRail != null) {
-                    schedule(node, startRail, direction);
+                Block startBlockRail = nextType.findRail(startBlock);
+                if (startBlockRail != null) {
+                    operations.add(new PathFindOperation(node, startBlockRail, direction));
                     return;
                 }
             } catch (Throwable t) {
@@ -164,17 +508,117 @@ public class PathProvider extends Task {
                 break;
             }
         }
+        // No track here yet, discover again once track is placed
+        node.setExplored(direction, new long[] {MathUtil.longHashToLong(startBlock.getX() >> 4, startBlock.getZ() >> 4)});
+    }
+
+    private static boolean isLoaded(World world, int blockX, int blockZ) {
+        return world.isChunkLoaded(blockX >> 4, blockZ >> 4);
+    }
+
+    /**
+     * Waits with discovering from a node until the chunk of a block is loaded, instead of loading it
+     *
+     * @param node to discover from
+     * @param direction to discover, null to discover all directions
+     * @param blockX of the block that must be loaded
+     * @param blockZ of the block that must be loaded
+     */
+    private void waitForChunk(PathNode node, BlockFace direction, int blockX, int blockZ) {
+        Long key = MathUtil.longHashToLong(blockX >> 4, blockZ >> 4);
+        List<WaitingNode> nodes = this.waitingNodes.get(key);
+        if (nodes == null) {
+            nodes = new ArrayList<>(1);
+            this.waitingNodes.put(key, nodes);
+        }
+        nodes.add(new WaitingNode(node, direction));
+        if (DEBUG_MODE) {
+            System.out.println("DISCOVERY FROM " + node.getDisplayName() + " WAITS FOR A CHUNK TO LOAD");
+        }
+    }
+
+    /**
+     * A node from which discovery can not start before a chunk is loaded
+     */
+    private static class WaitingNode {
+        public final PathNode node;
+        public final BlockFace direction;
+
+        public WaitingNode(PathNode node, BlockFace direction) {
+            this.node = node;
+            this.direction = direction;
+        }
     }
 
     private static class PathFindOperation {
         private final TrackIterator iter;
         private final BlockFace startDir;
         private final PathNode startNode;
+        private final World world;
+        private final Set<Long> chunks = new LinkedHashSet<>();
+        private long lastChunk;
+        private boolean passesSigns = false;
 
         public PathFindOperation(PathNode startNode, Block startBlock, BlockFace startFace) {
             this.iter = new TrackIterator(startBlock, startFace);
             this.startDir = startFace;
             this.startNode = startNode;
+            this.world = startBlock.getWorld();
+            this.lastChunk = MathUtil.longHashToLong(startBlock.getX() >> 4, startBlock.getZ() >> 4);
+            this.chunks.add(this.lastChunk);
+        }
+
+        /**
+         * Gets the chunks passed by the track explored so far
+         *
+         * @return chunk coordinate keys
+         */
+        public long[] getChunks() {
+            long[] result = new long[this.chunks.size()];
+            int i = 0;
+            for (Long chunk : this.chunks) {
+                result[i++] = chunk;
+            }
+            return result;
+        }
+
+        public boolean passesChunks(Set<Long> chunks) {
+            for (Long chunk : chunks) {
+                if (this.chunks.contains(chunk)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public World getWorld() {
+            return this.world;
+        }
+
+        /**
+         * Checks whether the chunk the next finding run moves into is loaded.
+         * When finished, this always returns True.
+         *
+         * @return True if the next run can be performed, False if a chunk must be loaded first
+         */
+        public boolean isNextLoaded() {
+            if (!iter.hasNext()) {
+                return true;
+            }
+            Block next = iter.peekNext();
+            BlockFace dir = iter.peekNextDirection();
+            return next.getWorld().isChunkLoaded((next.getX() + dir.getModX()) >> 4, (next.getZ() + dir.getModZ()) >> 4);
+        }
+
+        /**
+         * Gets the key of the chunk that must be loaded for the next finding run
+         *
+         * @return chunk key
+         */
+        public Long getNextChunkKey() {
+            Block next = iter.peekNext();
+            BlockFace dir = iter.peekNextDirection();
+            return MathUtil.longHashToLong((next.getX() + dir.getModX()) >> 4, (next.getZ() + dir.getModZ()) >> 4);
         }
 
         /**
@@ -187,9 +631,15 @@ public class PathProvider extends Task {
                 return true;
             }
             Block nextRail = iter.next();
+            long chunk = MathUtil.longHashToLong(nextRail.getX() >> 4, nextRail.getZ() >> 4);
+            if (chunk != this.lastChunk) {
+                this.chunks.add(chunk);
+                this.lastChunk = chunk;
+            }
             BlockLocation newNodeLocation;
             String newNodeName;
-            boolean hasFinished = false;
+            List<PathNode> newNodes = null;
+            boolean blocked = false;
             for (Block signblock : Util.getSignsFromRails(nextRail)) {
                 SignActionEvent event = new SignActionEvent(signblock);
                 if (event.getMode() != SignActionMode.NONE) {
@@ -200,23 +650,35 @@ public class PathProvider extends Task {
                         newNodeLocation = new BlockLocation(nextRail);
                         newNodeName = event.getLine(2);
                     } else if (event.isType("blocker") && event.isWatchedDirection(iter.currentDirection()) && event.isPowerAlwaysOn()) {
-                        hasFinished = true;
+                        blocked = true;
                         break;
                     } else {
+                        // Any other sign is executed by trains passing, which proxies do not do
+                        this.passesSigns = true;
                         continue;
                     }
                     if (!newNodeName.isEmpty() && !startNode.containsName(newNodeName)) {
-                        //finished, we found our first target - create connection
-                        PathNode to = PathNode.getOrCreate(newNodeName, newNodeLocation);
-                        this.startNode.addNeighbour(to, iter.getDistance() + 1, this.startDir);
-                        hasFinished = true;
-                        if (DEBUG_MODE) {
-                            System.out.println("MADE CONNECTION FROM " + startNode.getDisplayName() + " TO " + newNodeName);
+                        //finished, we found our first target
+                        if (newNodes == null) {
+                            newNodes = new ArrayList<>(1);
                         }
+                        newNodes.add(PathNode.getOrCreate(newNodeName, newNodeLocation));
+                    } else if (!event.isType("tag", "switcher")) {
+                        this.passesSigns = true; // Destination sign that is not a node along the way
                     }
                 }
             }
-            return hasFinished;
+            if (newNodes == null) {
+                return blocked;
+            }
+            // Create the connections once all signs of the rail are known
+            for (PathNode to : newNodes) {
+                this.startNode.addNeighbour(to, iter.getDistance() + 1, this.startDir, this.passesSigns);
+                if (DEBUG_MODE) {
+                    System.out.println("MADE CONNECTION FROM " + startNode.getDisplayName() + " TO " + to.getDisplayName());
+                }
+            }
+            return true;
         }
     }
 }
@@ -0,0 +1,114 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import com.bergerkiller.bukkit.tc.properties.IProperties;
+import org.bukkit.block.BlockFace;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The route a train or cart takes to reach its destination: all nodes passed along
+ * the way, and the direction to take at each of them. A route is computed once and
+ * followed node by node, until the destination or the graph of nodes changes.
+ */
+public class PathRoute {
+    private final String destination;
+    private final int version;
+    private final PathNode[] nodes;
+    private final BlockFace[] directions;
+    private int position = 0;
+
+    private PathRoute(String destination, int version, PathNode[] nodes, BlockFace[] directions) {
+        this.destination = destination;
+        this.version = version;
+        this.nodes = nodes;
+        this.directions = directions;
+    }
+
+    /**
+     * Computes the route from a node to a destination, following the same connections
+     * {@link PathNode#findConnection(PathNode)} would take at every node
+     *
+     * @param from node to start at
+     * @param destination name of the node to reach
+     * @return the route, or null if the destination can not be reached
+     */
+    public static PathRoute create(PathNode from, String destination) {
+        PathNode to = PathNode.get(destination);
+        if (to == null) {
+            return null;
+        }
+        final int version = PathNode.getGraphVersion();
+        final int maxLength = PathNode.getNodes().size();
+        List<PathNode> nodes = new ArrayList<>();
+        List<BlockFace> directions = new ArrayList<>();
+        PathNode node = from;
+        while (node != to) {
+            int index = node.findNextConnection(to);
+            if (index == -1 || nodes.size() >= maxLength) {
+                return null;
+            }
+            nodes.add(node);
+            directions.add(node.getConnectionDirection(index));
+            node = node.getConnectionTarget(index);
+        }
+        return new PathRoute(destination, version, nodes.toArray(new PathNode[nodes.size()]),
+                directions.toArray(new BlockFace[directions.size()]));
+    }
+
+    /**
+     * Gets the direction to take at a node of the route. Nodes passed are skipped,
+     * so the next call continues at the node after it. The node handled last is checked
+     * first, as the same switcher can raise several events for one train.
+     *
+     * @param node the train is at
+     * @param destination the train has
+     * @return direction to take, or null if this route can no longer be used and must be computed again
+     */
+    public BlockFace next(PathNode node, String destination) {
+        if (this.version != PathNode.getGraphVersion() || !this.destination.equals(destination)) {
+            return null;
+        }
+        if (this.position > 0 && this.nodes[this.position - 1] == node) {
+            return this.directions[this.position - 1];
+        }
+        for (int i = this.position; i < this.nodes.length; i++) {
+            if (this.nodes[i] == node) {
+                this.position = i + 1;
+                return this.directions[i];
+            }
+        }
+        return null; // Not where this route expects the train to be
+    }
+
+    /**
+     * Gets all nodes along this route, excluding the destination
+     *
+     * @return route nodes
+     */
+    public PathNode[] getNodes() {
+        return this.nodes.clone();
+    }
+
+    /**
+     * Gets the direction to take at a node, using the route cached in the properties
+     * when it is still valid. Otherwise, a new route is computed and cached.
+     *
+     * @param properties of the train or cart to route
+     * @param node the train or cart is at
+     * @param destination to reach
+     * @return direction to take, or null if the destination can not be reached
+     */
+    public static BlockFace getDirection(IProperties properties, PathNode node, String destination) {
+        PathRoute route = properties.getPathRoute();
+        BlockFace direction = (route == null) ? null : route.next(node, destination);
+        if (direction == null) {
+            route = create(node, destination);
+            properties.setPathRoute(route);
+            if (route != null) {
+                direction = route.next(node, destination);
+            }
+        }
+        return direction;
+    }
+}
@@ -0,0 +1,215 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import org.bukkit.block.BlockFace;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores for every node the connection to take first to reach a single destination.
+ * The table is computed with one reverse shortest-path pass from the destination, and
+ * results in exactly the same decisions as a {@link PathSearch} from every node would.
+ * It is only valid for the graph version it was computed for.<br><br>
+ * <p/>
+ * The connection to take is stored as a short, as junctions where many routes meet can have
+ * more than 127 connections. Should a node ever need a connection index past {@link Short#MAX_VALUE},
+ * the table stores {@link #USE_SEARCH} instead and a {@link PathSearch} is done from that node.
+ */
+class PathRoutingTable {
+    private static final short NO_ROUTE = -1;
+    static final short USE_SEARCH = -2;
+    private final int version;
+    private final short[] nextHop;
+    private final int[] distance;
+
+    private PathRoutingTable(int version, int nodeCount) {
+        this.version = version;
+        this.nextHop = new short[nodeCount];
+        this.distance = new int[nodeCount];
+        Arrays.fill(this.nextHop, NO_ROUTE);
+    }
+
+    /**
+     * Checks whether this table was computed for the current graph
+     *
+     * @return True if valid, False if it must be computed again
+     */
+    boolean isValid() {
+        return this.version == PathNode.getGraphVersion();
+    }
+
+    /**
+     * Gets the connection a node should take to reach the destination
+     *
+     * @param node to get the connection of
+     * @return index of the connection of the node to take, -1 if the destination can not be reached,
+     *         or {@link #USE_SEARCH} if the index did not fit in the table
+     */
+    int getConnection(PathNode node) {
+        if (node.index < 0 || node.index >= this.nextHop.length) {
+            return -1;
+        }
+        return this.nextHop[node.index];
+    }
+
+    /**
+     * Gets the total route distance from a node to the destination, including turn penalties
+     *
+     * @param node to get the distance of
+     * @return route distance
+     */
+    int getDistance(PathNode node) {
+        return this.distance[node.index];
+    }
+
+    /**
+     * Computes the routing table towards a destination for the current graph.
+     * Search states are connections (connection pool slots), as the turn penalty depends
+     * on the direction a node is left in compared to the direction of the connection taken before.
+     *
+     * @param destination to route to
+     * @return computed routing table
+     */
+    static PathRoutingTable compute(PathNode destination) {
+        List<PathNode> nodes = PathNode.getNodes();
+        final int nodeCount = nodes.size();
+        final int slotCount = PathConnectionPool.getSlotCount();
+        PathRoutingTable table = new PathRoutingTable(PathNode.getGraphVersion(), nodeCount);
+
+        // Find the owner of every slot, and the slots leading into every node
+        PathNode[] owners = new PathNode[slotCount];
+        int[] incomingStart = new int[nodeCount + 1];
+        for (PathNode node : nodes) {
+            for (int i = 0; i < node.getConnectionCount(); i++) {
+                owners[node.getConnectionSlot(i)] = node;
+                incomingStart[node.getConnectionTarget(i).index + 1]++;
+            }
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            incomingStart[i + 1] += incomingStart[i];
+        }
+        int[] incoming = new int[incomingStart[nodeCount]];
+        int[] incomingFill = Arrays.copyOf(incomingStart, nodeCount);
+        for (PathNode node : nodes) {
+            for (int i = 0; i < node.getConnectionCount(); i++) {
+                incoming[incomingFill[node.getConnectionTarget(i).index]++] = node.getConnectionSlot(i);
+            }
+        }
+
+        // Distance to the destination when starting with a connection, excluding the penalty of the first turn
+        // Connections into the destination end the route
+        int[] remaining = new int[slotCount];
+        Arrays.fill(remaining, Integer.MAX_VALUE);
+        ConnectionHeap heap = new ConnectionHeap();
+        boolean destinationValid = destination.index >= 0 && destination.index < nodeCount && nodes.get(destination.index) == destination;
+        if (destinationValid) {
+            for (int i = incomingStart[destination.index]; i < incomingStart[destination.index + 1]; i++) {
+                int slot = incoming[i];
+                remaining[slot] = PathConnectionPool.getDistance(slot);
+                heap.push(slot, remaining[slot]);
+            }
+        }
+        boolean[] done = new boolean[slotCount];
+        while (!heap.isEmpty()) {
+            int slot = heap.pop();
+            if (done[slot]) {
+                continue;
+            }
+            done[slot] = true;
+            PathNode from = owners[slot];
+            if (from == destination) {
+                continue;
+            }
+            BlockFace nextDirection = PathConnectionPool.getDirection(slot);
+            for (int i = incomingStart[from.index]; i < incomingStart[from.index + 1]; i++) {
+                int prev = incoming[i];
+                if (done[prev] || PathConnectionPool.getTarget(prev) == destination) {
+                    continue;
+                }
+                int dist = PathConnectionPool.getDistance(prev) + remaining[slot];
+                if (PathConnectionPool.getDirection(prev) != nextDirection) {
+                    dist++;
+                }
+                if (dist < remaining[prev]) {
+                    remaining[prev] = dist;
+                    heap.push(prev, dist);
+                }
+            }
+        }
+
+        // Pick the first shortest connection of every node, like a search from that node would
+        for (PathNode node : nodes) {
+            int best = Integer.MAX_VALUE;
+            for (int i = 0; i < node.getConnectionCount(); i++) {
+                int dist = remaining[node.getConnectionSlot(i)];
+                if (dist < best) {
+                    best = dist;
+                    table.nextHop[node.index] = (i <= Short.MAX_VALUE) ? (short) i : USE_SEARCH;
+                    table.distance[node.index] = dist + 1;
+                }
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Binary heap of connection pool slots, ordered by remaining distance.
+     * Slots can be pushed again with a lower distance, outdated entries are skipped when popped.
+     */
+    private static final class ConnectionHeap {
+        private int[] keys = new int[16];
+        private int[] ids = new int[16];
+        private int size = 0;
+
+        public boolean isEmpty() {
+            return this.size == 0;
+        }
+
+        public void push(int id, int key) {
+            if (this.size == this.ids.length) {
+                this.keys = Arrays.copyOf(this.keys, this.size * 2);
+                this.ids = Arrays.copyOf(this.ids, this.size * 2);
+            }
+            int i = this.size++;
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (this.keys[parent] <= key) {
+                    break;
+                }
+                this.keys[i] = this.keys[parent];
+                this.ids[i] = this.ids[parent];
+                i = parent;
+            }
+            this.keys[i] = key;
+            this.ids[i] = id;
+        }
+
+        public int pop() {
+            int result = this.ids[0];
+            int last = --this.size;
+            int lastKey = this.keys[last];
+            int lastId = this.ids[last];
+            int i = 0;
+            while (true) {
+                int child = (i << 1) + 1;
+                if (child >= this.size) {
+                    break;
+                }
+                if ((child + 1) < this.size && this.keys[child + 1] < this.keys[child]) {
+                    child++;
+                }
+                if (this.keys[child] >= lastKey) {
+                    break;
+                }
+                this.keys[i] = this.keys[child];
+                this.ids[i] = this.ids[child];
+                i = child;
+            }
+            if (this.size > 0) {
+                this.keys[i] = lastKey;
+                this.ids[i] = lastId;
+            }
+            return result;
+        }
+    }
+}
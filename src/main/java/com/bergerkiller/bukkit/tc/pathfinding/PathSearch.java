@@ -0,0 +1,242 @@
+package com.bergerkiller.bukkit.tc.pathfinding;
+
+import com.bergerkiller.bukkit.common.BlockLocation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A single shortest-path query from one node to another.
+ * Uses A* with a block-distance heuristic over a binary heap. Taking a turn
+ * (continuing in a different direction than the previous connection was taken)
+ * counts as one distance longer, which avoids the excessive use of turns in 2-way
+ * 'X' intersections. When routes are equally long, the route starting with the
+ * first connection in the neighbour order of the start node is taken.<br><br>
+ * <p/>
+ * The result is kept in the query itself, so several results can be used side by side.
+ * Search states are the connections (connection pool slots) taken to reach a node, as the
+ * turn penalty depends on the direction the node was reached from. The state of a slot is
+ * looked up in an array indexed by slot that is shared by all queries. Instead of clearing it,
+ * every query uses a new stamp and only entries carrying that stamp are valid.
+ */
+class PathSearch {
+    private final PathNode start;
+    private final PathNode destination;
+    // State of every connection pool slot, valid only when the stamp of the slot is that of the running query
+    private static int[] slotStates = new int[64];
+    private static int[] slotStamps = new int[64];
+    private static int currentStamp = 0;
+    // Per-state information, state 0 is the start node
+    private int[] stateSlot = new int[16];
+    private int[] stateDist = new int[16];
+    private int[] stateFirst = new int[16];
+    private int[] statePrev = new int[16];
+    private boolean[] stateDone = new boolean[16];
+    private int stateCount = 0;
+    // Binary heap of (estimated distance, first connection, state) entries
+    private int[] heapDist = new int[16];
+    private int[] heapFirst = new int[16];
+    private int[] heapState = new int[16];
+    private int heapSize = 0;
+    // Result
+    private int resultState = -1;
+
+    PathSearch(PathNode start, PathNode destination) {
+        this.start = start;
+        this.destination = destination;
+    }
+
+    /**
+     * Performs the search
+     *
+     * @return True if the destination could be reached, False if not
+     */
+    boolean run() {
+        int slotCount = PathConnectionPool.getSlotCount();
+        if (slotCount > slotStamps.length) {
+            int newLength = Math.max(slotCount, slotStamps.length * 2);
+            slotStates = new int[newLength];
+            slotStamps = new int[newLength];
+        }
+        if (++currentStamp == 0) {
+            // Stamps wrapped around, old stamps could be seen as valid again
+            Arrays.fill(slotStamps, 0);
+            currentStamp = 1;
+        }
+        addState(-1, 0, -1, -1);
+        push(0);
+        while (heapSize > 0) {
+            int state = pop();
+            if (stateDone[state]) {
+                continue; // Outdated heap entry
+            }
+            stateDone[state] = true;
+            int slot = stateSlot[state];
+            PathNode node = (slot == -1) ? start : PathConnectionPool.getTarget(slot);
+            if (slot != -1 && node == destination) {
+                resultState = state;
+                return true;
+            }
+            for (int i = 0; i < node.getConnectionCount(); i++) {
+                int next = node.getConnectionSlot(i);
+                int distance = stateDist[state] + PathConnectionPool.getDistance(next);
+                if (slot == -1 || PathConnectionPool.getDirection(slot) != PathConnectionPool.getDirection(next)) {
+                    distance++;
+                }
+                int first = (slot == -1) ? i : stateFirst[state];
+                if (slotStamps[next] != currentStamp) {
+                    push(addState(next, distance, first, state));
+                } else {
+                    int nextState = slotStates[next];
+                    if (!stateDone[nextState] && isBetter(distance, first, stateDist[nextState], stateFirst[nextState])) {
+                        stateDist[nextState] = distance;
+                        stateFirst[nextState] = first;
+                        statePrev[nextState] = state;
+                        push(nextState);
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the total distance of the route found, including turn penalties
+     *
+     * @return route distance
+     */
+    int getDistance() {
+        return stateDist[resultState];
+    }
+
+    /**
+     * Gets the connection of the start node that is taken first to reach the destination
+     *
+     * @return first connection
+     */
+    PathConnection getFirstConnection() {
+        return start.getConnection(stateFirst[resultState]);
+    }
+
+    /**
+     * Gets the index of the connection of the start node that is taken first to reach the destination
+     *
+     * @return first connection index
+     */
+    int getFirstConnectionIndex() {
+        return stateFirst[resultState];
+    }
+
+    /**
+     * Gets all the nodes passed along the route, including the start and destination nodes
+     *
+     * @return route nodes
+     */
+    PathNode[] getRoute() {
+        List<PathNode> route = new ArrayList<>();
+        for (int state = resultState; state > 0; state = statePrev[state]) {
+            route.add(PathConnectionPool.getTarget(stateSlot[state]));
+        }
+        route.add(start);
+        PathNode[] result = new PathNode[route.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = route.get(result.length - i - 1);
+        }
+        return result;
+    }
+
+    private static boolean isBetter(int distance, int first, int oldDistance, int oldFirst) {
+        return distance < oldDistance || (distance == oldDistance && first < oldFirst);
+    }
+
+    /**
+     * Estimates the remaining distance to the destination. Every block moved along the track
+     * changes each coordinate by at most one, so the largest coordinate difference never
+     * overestimates the track distance.
+     */
+    private int estimate(int state) {
+        int slot = stateSlot[state];
+        BlockLocation from = (slot == -1) ? start.location : PathConnectionPool.getTarget(slot).location;
+        BlockLocation to = destination.location;
+        if (!from.world.equals(to.world)) {
+            return 0;
+        }
+        return Math.max(Math.abs(from.x - to.x), Math.max(Math.abs(from.y - to.y), Math.abs(from.z - to.z)));
+    }
+
+    private int addState(int slot, int distance, int first, int prev) {
+        if (stateCount == stateDist.length) {
+            int newLength = stateCount * 2;
+            stateSlot = Arrays.copyOf(stateSlot, newLength);
+            stateDist = Arrays.copyOf(stateDist, newLength);
+            stateFirst = Arrays.copyOf(stateFirst, newLength);
+            statePrev = Arrays.copyOf(statePrev, newLength);
+            stateDone = Arrays.copyOf(stateDone, newLength);
+        }
+        int state = stateCount++;
+        stateSlot[state] = slot;
+        stateDist[state] = distance;
+        stateFirst[state] = first;
+        statePrev[state] = prev;
+        if (slot != -1) {
+            slotStates[slot] = state;
+            slotStamps[slot] = currentStamp;
+        }
+        return state;
+    }
+
+    private void push(int state) {
+        if (heapSize == heapState.length) {
+            int newLength = heapSize * 2;
+            heapDist = Arrays.copyOf(heapDist, newLength);
+            heapFirst = Arrays.copyOf(heapFirst, newLength);
+            heapState = Arrays.copyOf(heapState, newLength);
+        }
+        int dist = stateDist[state] + estimate(state);
+        int first = stateFirst[state];
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!isBetter(dist, first, heapDist[parent], heapFirst[parent])) {
+                break;
+            }
+            setHeap(i, heapDist[parent], heapFirst[parent], heapState[parent]);
+            i = parent;
+        }
+        setHeap(i, dist, first, state);
+    }
+
+    private int pop() {
+        int result = heapState[0];
+        int last = --heapSize;
+        int dist = heapDist[last];
+        int first = heapFirst[last];
+        int state = heapState[last];
+        int i = 0;
+        while (true) {
+            int child = (i << 1) + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if ((child + 1) < heapSize && isBetter(heapDist[child + 1], heapFirst[child + 1], heapDist[child], heapFirst[child])) {
+                child++;
+            }
+            if (!isBetter(heapDist[child], heapFirst[child], dist, first)) {
+                break;
+            }
+            setHeap(i, heapDist[child], heapFirst[child], heapState[child]);
+            i = child;
+        }
+        if (heapSize > 0) {
+            setHeap(i, dist, first, state);
+        }
+        return result;
+    }
+
+    private void setHeap(int index, int dist, int first, int state) {
+        heapDist[index] = dist;
+        heapFirst[index] = first;
+        heapState[index] = state;
+    }
+}
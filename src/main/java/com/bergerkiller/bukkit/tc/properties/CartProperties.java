@@ -11,6 +11,7 @@ import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.pathfinding.PathRoute;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
 import com.bergerkiller.bukkit.tc.storage.OfflineMember;
 import com.bergerkiller.bukkit.tc.utils.SoftReference;
@@ -41,6 +42,7 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
     private String enterMessage = null;
     private String destination = "";
     private String lastPathNode = "";
+    private PathRoute pathRoute = null;
     private boolean isPublic = true;
     private boolean pickUp = false;
     private boolean spawnItemDrops = true;
@@ -387,6 +389,7 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
 
     public void clearDestination() {
         this.destination = "";
+        this.pathRoute = null;
     }
 
     @Override
@@ -402,6 +405,17 @@ public class CartProperties extends CartPropertiesStore implements IProperties {
     @Override
     public void setDestination(String destination) {
         this.destination = destination == null ? "" : destination;
+        this.pathRoute = null;
+    }
+
+    @Override
+    public PathRoute getPathRoute() {
+        return this.pathRoute;
+    }
+
+    @Override
+    public void setPathRoute(PathRoute route) {
+        this.pathRoute = route;
     }
 
     @Override
@@ -2,6 +2,7 @@ package com.bergerkiller.bukkit.tc.properties;
 
 import com.bergerkiller.bukkit.common.BlockLocation;
 import com.bergerkiller.bukkit.common.config.ConfigurationNode;
+import com.bergerkiller.bukkit.tc.pathfinding.PathRoute;
 import org.bukkit.entity.Player;
 
 import java.util.Collection;
@@ -248,6 +249,21 @@ public interface IProperties extends IParsable {
      */
     void setDestination(String destination);
 
+    /**
+     * Gets the route last computed to reach the destination.
+     * This route is not saved, and is computed again when needed.
+     *
+     * @return path route, or null if none was computed
+     */
+    PathRoute getPathRoute();
+
+    /**
+     * Sets the route computed to reach the destination
+     *
+     * @param route to set to, null to clear it
+     */
+    void setPathRoute(PathRoute route);
+
     /**
      * Sets the Enter Message displayed when a player enters
      *
@@ -11,8 +11,10 @@ import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.pathfinding.PathRoute;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroup;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import com.bergerkiller.bukkit.tc.utils.SoftReference;
 
 import org.bukkit.Bukkit;
@@ -54,6 +56,7 @@ public class TrainProperties extends TrainPropertiesStore implements IProperties
     private boolean allowManualMovement = false;
     private boolean allowPlayerTake = true;
     private boolean soundEnabled = true;
+    private PathRoute pathRoute = null;
 
     protected TrainProperties(String trainname) {
         this.displayName = this.trainname = trainname;
@@ -84,7 +87,7 @@ public class TrainProperties extends TrainPropertiesStore implements IProperties
         if (this.isLoaded()) {
             return true;
         }
-        // Load all the chunks of this group to trigger a restore
+        // Load all the chunks of this group and restore it
         OfflineGroup group = OfflineGroupManager.findGroup(this.trainname);
         if (group == null) {
             TrainProperties.remove(getTrainName());
@@ -92,9 +95,8 @@ public class TrainProperties extends TrainPropertiesStore implements IProperties
         }
         World world = Bukkit.getWorld(group.worldUUID);
         if (world != null) {
-            for (long chunk : group.chunks) {
-                world.getChunkAt(MathUtil.longHashMsw(chunk), MathUtil.longHashLsw(chunk));
-            }
+            ChunkKeepAlive.loadTemporarily(world, group.chunks);
+            OfflineGroupManager.restoreNow(group);
         }
         return this.hasHolder();
     }
@@ -518,6 +520,7 @@ public class TrainProperties extends TrainPropertiesStore implements IProperties
         for (CartProperties prop : this) {
             prop.setDestination(destination);
         }
+        this.pathRoute = null;
     }
 
     @Override
@@ -525,6 +528,17 @@ public class TrainProperties extends TrainPropertiesStore implements IProperties
         for (CartProperties prop : this) {
             prop.clearDestination();
         }
+        this.pathRoute = null;
+    }
+
+    @Override
+    public PathRoute getPathRoute() {
+        return this.pathRoute;
+    }
+
+    @Override
+    public void setPathRoute(PathRoute route) {
+        this.pathRoute = route;
     }
 
     @Override
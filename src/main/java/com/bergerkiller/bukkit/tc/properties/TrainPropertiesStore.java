@@ -7,8 +7,10 @@ import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.tc.CollisionMode;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.storage.OfflineGroupManager;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
 import org.bukkit.entity.Player;
 
+import java.io.File;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -293,7 +295,8 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
     }
 
     /**
-     * Saves all Train Properties to disk
+     * Saves all Train Properties to disk. The properties are copied into a new configuration,
+     * which is converted to YAML and written in the background.
      */
     public static void save() {
         FileConfiguration config = new FileConfiguration(TrainCarts.plugin, propertiesFile);
@@ -301,11 +304,9 @@ public class TrainPropertiesStore extends HashSet<CartProperties> {
             //does this train even exist?!
             if (prop.hasHolder() || OfflineGroupManager.contains(prop.getTrainName())) {
                 prop.save(config.getNode(prop.getTrainName()));
-            } else {
-                config.remove(prop.getTrainName());
             }
         }
-        config.save();
+        SaveQueue.submit(new File(TrainCarts.plugin.getDataFolder(), propertiesFile), new SaveQueue.ConfigurationSnapshot(config));
     }
 
     /**
@@ -5,11 +5,13 @@ import com.bergerkiller.bukkit.common.utils.CommonUtil;
 import com.bergerkiller.bukkit.tc.Permission;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.Util;
-import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.controller.components.BlockTrackerGroup;
+import com.bergerkiller.bukkit.tc.events.EventDispatcher;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.events.SignChangeActionEvent;
+import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -62,6 +64,9 @@ public abstract class SignAction {
      * @return sign action, or null if not found
      */
     public static SignAction getSignAction(SignActionEvent event) {
+        if (actions == null) {
+            return null;
+        }
         for (SignAction action : actions) {
             if (action.match(event) && action.verify(event)) {
                 return action;
@@ -124,6 +129,7 @@ public abstract class SignAction {
                 }
                 // Tell train above to update signs, if available
                 if (info.hasRails()) {
+                    PathNode.invalidateTrack(info.getRails());
                     final MinecartMember<?> member = MinecartMemberStore.getAt(info.getRails());
                     if (member != null) {
                         member.getGroup().getBlockTracker().updatePosition();
@@ -149,9 +155,12 @@ public abstract class SignAction {
         }
         SignAction action = getSignAction(info);
         if (action != null) {
-            // First, remove this sign from all Minecarts on the world
-            for (MinecartGroup group : MinecartGroup.getGroups()) {
-                group.getBlockTracker().removeSign(info.getBlock());
+            // First, remove this sign from all Minecarts that have it active
+            BlockTrackerGroup.removeSignFromAll(info.getBlock());
+            SignActionProfiler.removeSign(info.getBlock());
+            // Nodes found by path finding may have changed
+            if (info.hasRails()) {
+                PathNode.invalidateTrack(info.getRails());
             }
             // Handle sign destroy logic
             action.destroy(info);
@@ -170,7 +179,7 @@ public abstract class SignAction {
 
         //Event
         info.setCancelled(false);
-        if (CommonUtil.callEvent(info).isCancelled() || actions == null) {
+        if (EventDispatcher.call(info).isCancelled() || actions == null) {
             return; // ignore further processing
         }
 
@@ -179,12 +188,19 @@ public abstract class SignAction {
 
         SignAction action = getSignAction(info);
         if (action != null && (facing || action.overrideFacing())) {
+            final boolean profile = SignActionProfiler.isEnabled();
+            final long startTime = profile ? System.nanoTime() : 0L;
+            boolean failed = false;
             try {
                 action.execute(info);
             } catch (Throwable t) {
+                failed = true;
                 TrainCarts.plugin.getLogger().log(Level.SEVERE, "Failed to execute " + info.getAction().toString() +
                         " for " + action.getClass().getSimpleName() + ":", CommonUtil.filterStackTrace(t));
             }
+            if (profile) {
+                SignActionProfiler.record(action, info, System.nanoTime() - startTime, failed);
+            }
         }
     }
 
@@ -242,6 +258,20 @@ public abstract class SignAction {
         return false;
     }
 
+    /**
+     * Whether this sign action wants to be executed for a certain action type.
+     * Only the frequently fired {@link SignActionType#MEMBER_MOVE}, {@link SignActionType#MEMBER_UPDATE}
+     * and {@link SignActionType#GROUP_UPDATE} types are checked: the block trackers skip constructing
+     * and dispatching these events for signs whose action is not subscribed to them.
+     * By default, sign actions only handle the enter, leave and redstone action types.
+     *
+     * @param type of action
+     * @return True if this sign action handles the action type, False if not
+     */
+    public boolean isSubscribed(SignActionType type) {
+        return !type.isContinuous();
+    }
+
     /**
      * Whether this sign overrides the internal facing check
      */
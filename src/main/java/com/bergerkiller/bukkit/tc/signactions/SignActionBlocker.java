@@ -51,4 +51,10 @@ public class SignActionBlocker extends SignAction {
     public boolean build(SignChangeActionEvent event) {
         return handleBuild(event, Permission.BUILD_BLOCKER, "train blocker", "block trains coming from a certain direction");
     }
+
+    @Override
+    public boolean isSubscribed(SignActionType type) {
+        // Move events are used to keep the train stopped on top of the sign
+        return type == SignActionType.MEMBER_MOVE || super.isSubscribed(type);
+    }
 }
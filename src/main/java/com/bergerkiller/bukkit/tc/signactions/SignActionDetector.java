@@ -2,7 +2,6 @@ package com.bergerkiller.bukkit.tc.signactions;
 
 import com.bergerkiller.bukkit.common.collections.BlockMap;
 import com.bergerkiller.bukkit.common.config.DataReader;
-import com.bergerkiller.bukkit.common.config.DataWriter;
 import com.bergerkiller.bukkit.common.utils.CommonUtil;
 import com.bergerkiller.bukkit.common.utils.FaceUtil;
 import com.bergerkiller.bukkit.common.utils.StreamUtil;
@@ -13,11 +12,13 @@ import com.bergerkiller.bukkit.tc.detector.DetectorRegion;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.events.SignChangeActionEvent;
 import com.bergerkiller.bukkit.tc.signactions.detector.DetectorSignPair;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
 import com.bergerkiller.bukkit.tc.utils.TrackMap;
 import org.bukkit.ChatColor;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -62,19 +63,22 @@ public class SignActionDetector extends SignAction {
     }
 
     public static void save(String filename) {
-        new DataWriter(filename) {
-            public void write(DataOutputStream stream) throws IOException {
-                Set<DetectorSignPair> detectorset = new HashSet<>(detectors.size() / 2);
-                for (DetectorSignPair dec : detectors.values()) {
-                    detectorset.add(dec);
-                }
-                stream.writeInt(detectorset.size());
-                for (DetectorSignPair det : detectorset) {
-                    StreamUtil.writeUUID(stream, det.region.getUniqueId());
-                    det.write(stream);
-                }
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            DataOutputStream stream = new DataOutputStream(data);
+            Set<DetectorSignPair> detectorset = new HashSet<>(detectors.size() / 2);
+            for (DetectorSignPair dec : detectors.values()) {
+                detectorset.add(dec);
             }
-        }.write();
+            stream.writeInt(detectorset.size());
+            for (DetectorSignPair det : detectorset) {
+                StreamUtil.writeUUID(stream, det.region.getUniqueId());
+                det.write(stream);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); // Can not happen, written to memory
+        }
+        SaveQueue.submit(filename, new SaveQueue.BytesSnapshot(data.toByteArray()));
     }
 
     @Override
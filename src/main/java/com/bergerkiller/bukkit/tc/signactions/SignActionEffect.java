@@ -84,6 +84,12 @@ public class SignActionEffect extends SignAction {
         return false;
     }
 
+    @Override
+    public boolean isSubscribed(SignActionType type) {
+        // Move events are used by the meffect sign
+        return type == SignActionType.MEMBER_MOVE || super.isSubscribed(type);
+    }
+
     @Override
     public boolean canSupportRC() {
         return true;
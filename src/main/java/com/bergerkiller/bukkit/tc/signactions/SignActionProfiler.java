@@ -0,0 +1,262 @@
+package com.bergerkiller.bukkit.tc.signactions;
+
+import com.bergerkiller.bukkit.common.BlockLocation;
+import com.bergerkiller.bukkit.common.MessageBuilder;
+import com.bergerkiller.bukkit.common.Task;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.tc.TrainCarts;
+import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
+import org.bukkit.Chunk;
+import org.bukkit.block.Block;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of how often, and how long, sign actions are executed.
+ * Statistics are kept per sign action class, per sign action type and per sign location.
+ * When disabled, {@link SignAction#executeAll(SignActionEvent)} only checks {@link #isEnabled()}.
+ */
+public class SignActionProfiler {
+    private static boolean enabled = false;
+    private static int topLocationCount = 10;
+    private static Task dumpTask;
+    private static long startTime = System.currentTimeMillis();
+    private static final Map<Class<?>, Stats> actionStats = new HashMap<>();
+    private static final EnumMap<SignActionType, Stats> typeStats = new EnumMap<>(SignActionType.class);
+    private static final Map<BlockLocation, Stats> locationStats = new HashMap<>();
+
+    /**
+     * Loads the profiler configuration and starts or stops the periodic statistics dump
+     *
+     * @param enabled whether profiling is enabled
+     * @param dumpInterval in seconds between writing the statistics to file, 0 to disable
+     * @param topLocations amount of hottest sign locations to display
+     */
+    public static void init(boolean enabled, int dumpInterval, int topLocations) {
+        setEnabled(enabled);
+        topLocationCount = topLocations;
+        Task.stop(dumpTask);
+        dumpTask = null;
+        if (dumpInterval > 0) {
+            final long intervalTicks = (long) dumpInterval * 20;
+            dumpTask = new Task(TrainCarts.plugin) {
+                public void run() {
+                    if (isEnabled()) {
+                        dump(getDumpFile());
+                    }
+                }
+            }.start(intervalTicks, intervalTicks);
+        }
+    }
+
+    public static void deinit() {
+        Task.stop(dumpTask);
+        dumpTask = null;
+        enabled = false;
+        reset();
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        if (enabled && !SignActionProfiler.enabled) {
+            reset();
+        }
+        SignActionProfiler.enabled = enabled;
+    }
+
+    /**
+     * Clears all statistics gathered so far
+     */
+    public static void reset() {
+        actionStats.clear();
+        typeStats.clear();
+        locationStats.clear();
+        startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Records a single execution of a sign action
+     *
+     * @param action that was executed
+     * @param info of the execution
+     * @param duration of the execution in nanoseconds
+     * @param failed whether the execution threw an exception
+     */
+    public static void record(SignAction action, SignActionEvent info, long duration, boolean failed) {
+        getStats(actionStats, action.getClass()).add(duration, failed);
+        Stats stats = typeStats.get(info.getAction());
+        if (stats == null) {
+            stats = new Stats();
+            typeStats.put(info.getAction(), stats);
+        }
+        stats.add(duration, failed);
+        getStats(locationStats, new BlockLocation(info.getBlock())).add(duration, failed);
+    }
+
+    /**
+     * Forgets the statistics of a sign that was removed
+     *
+     * @param signBlock of the sign
+     */
+    public static void removeSign(Block signBlock) {
+        if (!locationStats.isEmpty()) {
+            locationStats.remove(new BlockLocation(signBlock));
+        }
+    }
+
+    /**
+     * Forgets the statistics of all signs in a chunk that unloads, so the statistics per
+     * sign location do not keep growing while trains travel through the world
+     *
+     * @param chunk that unloads
+     */
+    public static void unloadChunk(Chunk chunk) {
+        if (locationStats.isEmpty()) {
+            return;
+        }
+        String worldName = chunk.getWorld().getName();
+        Iterator<BlockLocation> iter = locationStats.keySet().iterator();
+        while (iter.hasNext()) {
+            BlockLocation location = iter.next();
+            if ((location.x >> 4) == chunk.getX() && (location.z >> 4) == chunk.getZ() && location.world.equals(worldName)) {
+                iter.remove();
+            }
+        }
+    }
+
+    private static <K> Stats getStats(Map<K, Stats> map, K key) {
+        Stats stats = map.get(key);
+        if (stats == null) {
+            stats = new Stats();
+            map.put(key, stats);
+        }
+        return stats;
+    }
+
+    public static File getDumpFile() {
+        return new File(TrainCarts.plugin.getDataFolder(), "signstats.csv");
+    }
+
+    /**
+     * Sends the gathered statistics to a command sender.
+     * Only the sign locations that took the most time in total are listed.
+     *
+     * @param sender to send the statistics to
+     */
+    public static void show(CommandSender sender) {
+        MessageBuilder builder = new MessageBuilder();
+        builder.yellow("Sign statistics of the past ").white(getElapsedSeconds()).yellow(" seconds (");
+        if (enabled) {
+            builder.green("enabled");
+        } else {
+            builder.red("disabled");
+        }
+        builder.yellow("):");
+        builder.newLine().yellow("Per sign action:");
+        for (Map.Entry<Class<?>, Stats> entry : sorted(actionStats)) {
+            appendStats(builder, entry.getKey().getSimpleName(), entry.getValue());
+        }
+        builder.newLine().yellow("Per action type:");
+        for (Map.Entry<SignActionType, Stats> entry : sorted(typeStats)) {
+            appendStats(builder, entry.getKey().toString(), entry.getValue());
+        }
+        builder.newLine().yellow("Hottest sign locations:");
+        List<Map.Entry<BlockLocation, Stats>> locations = sorted(locationStats);
+        for (int i = 0; i < locations.size() && i < topLocationCount; i++) {
+            appendStats(builder, locations.get(i).getKey().toString(), locations.get(i).getValue());
+        }
+        builder.send(sender);
+    }
+
+    private static void appendStats(MessageBuilder builder, String name, Stats stats) {
+        builder.newLine().white("  ").white(name).yellow(": ");
+        builder.white(stats.count).yellow("x, total ").white(MathUtil.round(stats.getTotalMillis(), 2));
+        builder.yellow("ms, max ").white(MathUtil.round(stats.getMaxMillis(), 3)).yellow("ms");
+        if (stats.errors > 0) {
+            builder.yellow(", ").red(stats.errors + " errors");
+        }
+    }
+
+    /**
+     * Writes all gathered statistics to a CSV file. The file contents are built right away,
+     * the file itself is written in the background by the {@link SaveQueue}.
+     *
+     * @param file to write to
+     */
+    public static void dump(File file) {
+        StringBuilder csv = new StringBuilder();
+        csv.append("category,name,count,errors,total_ms,avg_ms,max_ms\n");
+        for (Map.Entry<Class<?>, Stats> entry : sorted(actionStats)) {
+            writeStats(csv, "action", entry.getKey().getSimpleName(), entry.getValue());
+        }
+        for (Map.Entry<SignActionType, Stats> entry : sorted(typeStats)) {
+            writeStats(csv, "type", entry.getKey().toString(), entry.getValue());
+        }
+        List<Map.Entry<BlockLocation, Stats>> locations = sorted(locationStats);
+        for (int i = 0; i < locations.size() && i < topLocationCount; i++) {
+            writeStats(csv, "location", locations.get(i).getKey().toString(), locations.get(i).getValue());
+        }
+        SaveQueue.submit(file, new SaveQueue.BytesSnapshot(csv.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void writeStats(StringBuilder csv, String category, String name, Stats stats) {
+        csv.append(category).append(",\"").append(name).append("\",").append(stats.count).append(',');
+        csv.append(stats.errors).append(',').append(stats.getTotalMillis()).append(',');
+        csv.append(stats.getTotalMillis() / stats.count).append(',').append(stats.getMaxMillis()).append('\n');
+    }
+
+    private static long getElapsedSeconds() {
+        return (System.currentTimeMillis() - startTime) / 1000;
+    }
+
+    private static <K> List<Map.Entry<K, Stats>> sorted(Map<K, Stats> map) {
+        List<Map.Entry<K, Stats>> entries = new ArrayList<>(map.entrySet());
+        Collections.sort(entries, new Comparator<Map.Entry<K, Stats>>() {
+            @Override
+            public int compare(Map.Entry<K, Stats> o1, Map.Entry<K, Stats> o2) {
+                return Long.compare(o2.getValue().total, o1.getValue().total);
+            }
+        });
+        return entries;
+    }
+
+    private static class Stats {
+        public int count = 0;
+        public int errors = 0;
+        public long total = 0;
+        public long max = 0;
+
+        public void add(long duration, boolean failed) {
+            this.count++;
+            this.total += duration;
+            if (duration > this.max) {
+                this.max = duration;
+            }
+            if (failed) {
+                this.errors++;
+            }
+        }
+
+        public double getTotalMillis() {
+            return (double) this.total / 1.0E6;
+        }
+
+        public double getMaxMillis() {
+            return (double) this.max / 1.0E6;
+        }
+    }
+}
@@ -2,12 +2,10 @@ package com.bergerkiller.bukkit.tc.signactions;
 
 import com.bergerkiller.bukkit.common.collections.BlockMap;
 import com.bergerkiller.bukkit.common.config.DataReader;
-import com.bergerkiller.bukkit.common.config.DataWriter;
 import com.bergerkiller.bukkit.common.utils.FaceUtil;
 import com.bergerkiller.bukkit.common.utils.LogicUtil;
 import com.bergerkiller.bukkit.common.utils.ParseUtil;
 import com.bergerkiller.bukkit.common.utils.StringUtil;
-import com.bergerkiller.bukkit.common.utils.WorldUtil;
 import com.bergerkiller.bukkit.tc.Permission;
 import com.bergerkiller.bukkit.tc.Util;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
@@ -17,6 +15,8 @@ import com.bergerkiller.bukkit.tc.events.GroupCreateEvent;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.events.SignChangeActionEvent;
 import com.bergerkiller.bukkit.tc.signactions.spawner.SpawnSign;
+import com.bergerkiller.bukkit.tc.storage.SaveQueue;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import com.bergerkiller.bukkit.tc.utils.TrackIterator;
 import com.bergerkiller.bukkit.tc.utils.TrackWalkIterator;
 import org.bukkit.ChatColor;
@@ -25,6 +25,7 @@ import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.entity.EntityType;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -294,7 +295,7 @@ public class SignActionSpawn extends SignAction {
 
             // Prepare chunks
             for (Location loc : spawnLocations) {
-                WorldUtil.loadChunks(loc, 2);
+                ChunkKeepAlive.loadTemporarily(loc.getWorld(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4, 2);
             }
 
             //Spawn
@@ -409,14 +410,18 @@ public class SignActionSpawn extends SignAction {
     }
 
     public static void save(String filename) {
-        new DataWriter(filename) {
-            public void write(DataOutputStream stream) throws IOException {
-                stream.writeInt(spawnSigns.size());
-                for (SpawnSign sign : spawnSigns.values()) {
-                    sign.write(stream);
-                }
+        // The remaining spawn times change every tick, so the signs are encoded right away
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            DataOutputStream stream = new DataOutputStream(data);
+            stream.writeInt(spawnSigns.size());
+            for (SpawnSign sign : spawnSigns.values()) {
+                sign.write(stream);
             }
-        }.write();
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); // Can not happen, written to memory
+        }
+        SaveQueue.submit(filename, new SaveQueue.BytesSnapshot(data.toByteArray()));
     }
 
     @Override
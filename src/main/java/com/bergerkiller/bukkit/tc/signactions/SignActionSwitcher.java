@@ -10,9 +10,9 @@ import com.bergerkiller.bukkit.tc.Permission;
 import com.bergerkiller.bukkit.tc.actions.GroupActionWaitPathFinding;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
 import com.bergerkiller.bukkit.tc.events.SignChangeActionEvent;
-import com.bergerkiller.bukkit.tc.pathfinding.PathConnection;
 import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
 import com.bergerkiller.bukkit.tc.pathfinding.PathProvider;
+import com.bergerkiller.bukkit.tc.pathfinding.PathRoute;
 import com.bergerkiller.bukkit.tc.properties.IProperties;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
@@ -20,6 +20,7 @@ import org.bukkit.block.Sign;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class SignActionSwitcher extends SignAction {
@@ -158,17 +159,20 @@ public class SignActionSwitcher extends SignAction {
                 // Continue with path finding if a valid destination is specified
                 // If the current node denotes the destination - don't switch!
                 if (!LogicUtil.nullOrEmpty(destination) && !node.containsName(destination)) {
-                    if (PathProvider.isProcessing()) {
+                    Set<PathNode> pendingNodes = PathProvider.getPendingNodes(node, destination);
+                    if (!pendingNodes.isEmpty()) {
+                        // Discover the nodes this train waits for first
+                        PathProvider.prioritize(pendingNodes);
                         double currentForce = info.getGroup().getAverageForce();
                         // Add an action to let the train wait until the node IS explored
-                        info.getGroup().getActions().addAction(new GroupActionWaitPathFinding(info, node, destination));
+                        info.getGroup().getActions().addAction(new GroupActionWaitPathFinding(info, prop, node, destination));
                         info.getMember().getActions().addActionLaunch(info.getMember().getDirectionFrom(), 1.0, currentForce);
                         info.getGroup().stop();
                     } else {
-                        // Switch the rails to the right direction
-                        PathConnection conn = node.findConnection(destination);
-                        if (conn != null) {
-                            info.setRailsTo(conn.direction);
+                        // Switch the rails to the right direction, following the route computed before
+                        BlockFace direction = PathRoute.getDirection(prop, node, destination);
+                        if (direction != null) {
+                            info.setRailsTo(direction);
                         }
                     }
                 }
@@ -202,4 +206,10 @@ public class SignActionSwitcher extends SignAction {
     public boolean overrideFacing() {
         return true;
     }
+
+    @Override
+    public boolean isSubscribed(SignActionType type) {
+        // Update events are used to re-apply the switched direction when properties change
+        return type != SignActionType.MEMBER_MOVE;
+    }
 }
@@ -35,4 +35,19 @@ public enum SignActionType {
         }
         return true;
     }
-}
\ No newline at end of file
+
+    /**
+     * This sign action type is fired continuously while a train or cart is on top of the sign
+     * 
+     * @return continuous
+     */
+    public boolean isContinuous() {
+        switch (this) {
+        case MEMBER_MOVE:
+        case MEMBER_UPDATE:
+        case GROUP_UPDATE:
+            return true;
+        }
+        return false;
+    }
+}
@@ -9,6 +9,7 @@ import com.bergerkiller.bukkit.tc.actions.MemberActionLaunch;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
 import com.bergerkiller.bukkit.tc.controller.MinecartMember;
 import com.bergerkiller.bukkit.tc.properties.TrainPropertiesStore;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import org.bukkit.World;
 
 import java.io.DataInputStream;
@@ -25,10 +26,17 @@ import java.util.logging.Level;
  */
 public class OfflineGroup {
     public final LongHashSet chunks;
-    public final LongHashSet loadedChunks;
     public OfflineMember[] members;
     public String name;
     public UUID worldUUID;
+    // Amount of chunks in chunks that are not loaded, kept up to date by chunk load and unload events
+    int missingChunks;
+    // Whether this group is waiting in the restore queue
+    boolean queued = false;
+    // Virtual movement towards the destination while offline, null if not moving
+    OfflineGroupMovement movement = null;
+    // Loads the chunks of the members of a moving group before it is restored, null when not loading
+    private ChunkKeepAlive.Ticket memberChunksTicket = null;
 
     public OfflineGroup(MinecartGroup group) {
         this(group.size());
@@ -52,7 +60,6 @@ public class OfflineGroup {
         // Assume that each member adds 5 chunks every 10 carts
         final int chunkCount = 25 + (int) ((double) (5 / 10) * (double) memberCount);
         this.chunks = new LongHashSet(chunkCount);
-        this.loadedChunks = new LongHashSet(chunkCount);
     }
 
     public static OfflineGroup readFrom(DataInputStream stream) throws IOException {
@@ -74,25 +81,86 @@ public class OfflineGroup {
         return false;
     }
 
+    /**
+     * Checks whether a Minecart entity is one of the members of this group
+     *
+     * @param entityUID of the Minecart
+     * @return True if it is a member
+     */
+    public boolean containsMember(UUID entityUID) {
+        for (OfflineMember member : this.members) {
+            if (member.entityUID.equals(entityUID)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public boolean testFullyLoaded() {
-        return this.loadedChunks.size() == this.chunks.size();
+        return this.missingChunks == 0;
     }
 
+    /**
+     * Counts the chunks of this group that are not loaded
+     *
+     * @param world the group is in
+     * @return True if all chunks are loaded, False if not
+     */
     public boolean updateLoadedChunks(World world) {
-        this.loadedChunks.clear();
+        int missing = 0;
         final LongIterator iter = this.chunks.longIterator();
         while (iter.hasNext()) {
             long chunk = iter.next();
-            if (WorldUtil.isLoaded(world, MathUtil.longHashMsw(chunk), MathUtil.longHashLsw(chunk))) {
-                this.loadedChunks.add(chunk);
+            if (!WorldUtil.isLoaded(world, MathUtil.longHashMsw(chunk), MathUtil.longHashLsw(chunk))) {
+                missing++;
             }
         }
-        if (OfflineGroupManager.lastUnloadChunk != null) {
-            this.loadedChunks.remove(OfflineGroupManager.lastUnloadChunk);
-        }
+        this.missingChunks = missing;
         return this.testFullyLoaded();
     }
 
+    /**
+     * Checks whether the chunks the members are in are loaded. A group moving while offline
+     * is restored away from these chunks, so they are not loaded by the chunks around the group.
+     * When not all are loaded, they are loaded over the next ticks and kept loaded until
+     * {@link #releaseMemberChunks()} is called.
+     *
+     * @param world the group is in
+     * @return True if the chunks of all members are loaded
+     */
+    boolean loadMemberChunks(World world) {
+        LongHashSet memberChunks = new LongHashSet(this.members.length);
+        boolean loaded = true;
+        for (OfflineMember member : this.members) {
+            memberChunks.add(MathUtil.longHashToLong(member.cx, member.cz));
+            if (!world.isChunkLoaded(member.cx, member.cz)) {
+                loaded = false;
+            }
+        }
+        if (loaded) {
+            return true;
+        }
+        if (this.memberChunksTicket == null) {
+            this.memberChunksTicket = new ChunkKeepAlive.Ticket();
+        }
+        this.memberChunksTicket.update(world, memberChunks, false);
+        return false;
+    }
+
+    /**
+     * Stops keeping the chunks requested by {@link #loadMemberChunks(World)} loaded
+     */
+    void releaseMemberChunks() {
+        if (this.memberChunksTicket != null) {
+            this.memberChunksTicket.release();
+            this.memberChunksTicket = null;
+        }
+    }
+
+    /**
+     * Generates the chunks around the members of this group. Until they are counted using
+     * {@link #updateLoadedChunks(World)}, all chunks are assumed to be not loaded.
+     */
     public void genChunks() {
         this.chunks.clear();
         for (OfflineMember wm : this.members) {
@@ -102,6 +170,7 @@ public class OfflineGroup {
                 }
             }
         }
+        this.missingChunks = this.chunks.size();
     }
 
     /**
@@ -136,10 +205,14 @@ public class OfflineGroup {
      * Read and write functions used internally
      */
     public void writeTo(DataOutputStream stream) throws IOException {
+        writeTo(stream, this.members, this.name);
+    }
+
+    public static void writeTo(DataOutputStream stream, OfflineMember[] members, String name) throws IOException {
         stream.writeInt(members.length);
         for (OfflineMember member : members) {
             member.writeTo(stream);
         }
-        stream.writeUTF(this.name);
+        stream.writeUTF(name);
     }
 }
\ No newline at end of file
@@ -0,0 +1,308 @@
+package com.bergerkiller.bukkit.tc.storage;
+
+import com.bergerkiller.bukkit.common.utils.CommonUtil;
+import com.bergerkiller.bukkit.common.utils.StreamUtil;
+import com.bergerkiller.bukkit.tc.TrainCarts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+import java.util.logging.Level;
+
+/**
+ * Append-only journal of the changes made to the stored offline groups since the groupdata
+ * file was last written. Changes are appended to the journal file at the end of the tick
+ * they were made in, so saving only costs time for the changes made. Once the journal grows
+ * larger than the amount of stored groups, it is compacted: all groups are written to the
+ * groupdata file in the background, after which the journal is started over.<br><br>
+ * <p/>
+ * Every journal file starts with a generation number. The groupdata file stores the generation
+ * of the last journal included in it, so journals written before it are not replayed twice.
+ */
+class OfflineGroupJournal {
+    public static final byte STORE = 0;
+    public static final byte RESTORE = 1;
+    public static final byte RENAME = 2;
+    public static final byte REMOVE = 3;
+    public static final byte REMOVE_MEMBER = 4;
+    public static final byte CLEAR_WORLD = 5;
+    public static final byte MOVE = 6;
+    private static final int JOURNAL_VERSION = 1;
+    private static final int MIN_COMPACT_RECORDS = 256;
+    private final File dataFile;
+    private final File file;
+    private final File oldFile;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordStream = new DataOutputStream(record);
+    private long generation = 0;
+    private int recordCount = 0;
+    private boolean flushScheduled = false;
+    private boolean closed = false;
+
+    public OfflineGroupJournal(String dataFilename) {
+        this.dataFile = new File(dataFilename).getAbsoluteFile();
+        this.file = new File(dataFilename + ".journal");
+        this.oldFile = new File(dataFilename + ".journal.old");
+    }
+
+    /**
+     * Reads and handles all records not yet included in the groupdata file
+     *
+     * @param includedGeneration generation of the last journal included in the groupdata file, -1 for none
+     * @param handler to handle the records
+     * @return True if the groupdata file must be written right away, as a compaction did not complete
+     */
+    public boolean replay(long includedGeneration, RecordHandler handler) {
+        this.generation = includedGeneration + 1;
+        boolean incomplete = false;
+        for (File journalFile : new File[] {this.oldFile, this.file}) {
+            if (!journalFile.exists()) {
+                continue;
+            }
+            try (DataInputStream stream = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+                int version = stream.readInt();
+                long fileGeneration = stream.readLong();
+                if (version != JOURNAL_VERSION) {
+                    throw new IOException("Unsupported journal version " + version);
+                }
+                if (fileGeneration <= includedGeneration) {
+                    continue; // Already included in the groupdata file
+                }
+                this.generation = Math.max(this.generation, fileGeneration);
+                if (journalFile == this.oldFile) {
+                    incomplete = true;
+                }
+                while (true) {
+                    int length;
+                    try {
+                        length = stream.readInt();
+                    } catch (EOFException ex) {
+                        break;
+                    }
+                    byte[] data = new byte[length];
+                    try {
+                        stream.readFully(data);
+                    } catch (EOFException ex) {
+                        TrainCarts.plugin.log(Level.WARNING, "The last change to the stored trains was not fully written, it is ignored");
+                        break;
+                    }
+                    DataInputStream recordStream = new DataInputStream(new ByteArrayInputStream(data));
+                    handler.handle(recordStream.readByte(), recordStream);
+                    this.recordCount++;
+                }
+            } catch (IOException ex) {
+                TrainCarts.plugin.getLogger().log(Level.SEVERE, "Failed to read stored train changes from " + journalFile.getName(), ex);
+            }
+        }
+        return incomplete;
+    }
+
+    public void store(OfflineGroup group) {
+        try {
+            this.recordStream.writeByte(STORE);
+            StreamUtil.writeUUID(this.recordStream, group.worldUUID);
+            group.writeTo(this.recordStream);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); // Can not happen, written to memory
+        }
+        this.endRecord();
+    }
+
+    /**
+     * Records the position a group moving while offline has reached
+     *
+     * @param group that moves, with a movement that is up to date
+     */
+    public void move(OfflineGroup group) {
+        try {
+            this.recordStream.writeByte(MOVE);
+            this.recordStream.writeUTF(group.name);
+            group.movement.writeTo(this.recordStream);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.endRecord();
+    }
+
+    public void restore(String groupName) {
+        this.writeName(RESTORE, groupName);
+    }
+
+    public void remove(String groupName) {
+        this.writeName(REMOVE, groupName);
+    }
+
+    public void rename(String oldGroupName, String newGroupName) {
+        try {
+            this.recordStream.writeByte(RENAME);
+            this.recordStream.writeUTF(oldGroupName);
+            this.recordStream.writeUTF(newGroupName);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.endRecord();
+    }
+
+    public void removeMember(UUID memberUUID) {
+        this.writeUUID(REMOVE_MEMBER, memberUUID);
+    }
+
+    public void clearWorld(UUID worldUUID) {
+        this.writeUUID(CLEAR_WORLD, worldUUID);
+    }
+
+    private void writeName(byte type, String name) {
+        try {
+            this.recordStream.writeByte(type);
+            this.recordStream.writeUTF(name);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.endRecord();
+    }
+
+    private void writeUUID(byte type, UUID uuid) {
+        try {
+            this.recordStream.writeByte(type);
+            StreamUtil.writeUUID(this.recordStream, uuid);
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        this.endRecord();
+    }
+
+    private void endRecord() {
+        int length = this.record.size();
+        this.pending.write((length >>> 24) & 0xFF);
+        this.pending.write((length >>> 16) & 0xFF);
+        this.pending.write((length >>> 8) & 0xFF);
+        this.pending.write(length & 0xFF);
+        this.pending.write(this.record.toByteArray(), 0, length);
+        this.record.reset();
+        this.recordCount++;
+        if (!this.flushScheduled) {
+            this.flushScheduled = true;
+            CommonUtil.nextTick(new Runnable() {
+                public void run() {
+                    flush();
+                }
+            });
+        }
+    }
+
+    /**
+     * Appends all changes made since the last flush to the journal file
+     */
+    public void flush() {
+        this.flushScheduled = false;
+        if (this.closed || this.pending.size() == 0) {
+            return;
+        }
+        boolean newFile = !this.file.exists() || this.file.length() == 0;
+        try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, true)))) {
+            if (newFile) {
+                stream.writeInt(JOURNAL_VERSION);
+                stream.writeLong(this.generation);
+            }
+            this.pending.writeTo(stream);
+        } catch (IOException ex) {
+            TrainCarts.plugin.getLogger().log(Level.SEVERE, "Failed to write stored train changes to " + this.file.getName(), ex);
+        }
+        this.pending.reset();
+    }
+
+    /**
+     * Checks whether the journal has grown large enough to be compacted
+     *
+     * @param groupCount amount of groups stored
+     * @return True if compaction is needed
+     */
+    public boolean needsCompaction(int groupCount) {
+        return this.recordCount > Math.max(MIN_COMPACT_RECORDS, groupCount);
+    }
+
+    /**
+     * Writes all groups to the groupdata file in the background, after which the journal
+     * written so far is deleted. Changes made in the meantime are written to a new journal.
+     *
+     * @param writer of the groupdata, capturing all groups at the time of calling
+     */
+    public void compact(final SnapshotWriter writer) {
+        this.flush();
+        if (this.oldFile.exists()) {
+            // The previous compaction is still being written
+            SaveQueue.waitForSaves();
+            if (this.oldFile.exists()) {
+                // It failed, the journals set aside can only be included by writing everything now
+                this.compactNow(writer);
+                return;
+            }
+        }
+        if (this.file.exists() && !this.file.renameTo(this.oldFile)) {
+            TrainCarts.plugin.log(Level.WARNING, "Failed to set aside the stored train changes, compaction skipped");
+            return;
+        }
+        final long includedGeneration = this.generation++;
+        this.recordCount = 0;
+        SaveQueue.submit(this.dataFile, new SaveQueue.Snapshot() {
+            @Override
+            public void write(DataOutputStream stream) throws IOException {
+                writer.write(stream, includedGeneration);
+            }
+
+            @Override
+            public void saved() {
+                oldFile.delete();
+            }
+        });
+    }
+
+    /**
+     * Writes all groups to the groupdata file right away, and deletes all journals
+     *
+     * @param writer of the groupdata
+     */
+    public void compactNow(final SnapshotWriter writer) {
+        this.flush();
+        SaveQueue.waitForSaves();
+        final long includedGeneration = this.generation++;
+        boolean written = SaveQueue.write(this.dataFile, new SaveQueue.Snapshot() {
+            @Override
+            public void write(DataOutputStream stream) throws IOException {
+                writer.write(stream, includedGeneration);
+            }
+        });
+        if (written) {
+            this.file.delete();
+            this.oldFile.delete();
+            this.recordCount = 0;
+        }
+    }
+
+    /**
+     * Writes all remaining changes and stops recording new ones
+     */
+    public void close() {
+        this.flush();
+        SaveQueue.waitForSaves();
+        this.closed = true;
+    }
+
+    public interface RecordHandler {
+        void handle(byte type, DataInputStream stream) throws IOException;
+    }
+
+    public interface SnapshotWriter {
+        void write(DataOutputStream stream, long includedGeneration) throws IOException;
+    }
+}
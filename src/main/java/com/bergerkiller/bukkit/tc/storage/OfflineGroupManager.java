@@ -1,20 +1,22 @@
 package com.bergerkiller.bukkit.tc.storage;
 
 import com.bergerkiller.bukkit.common.config.DataReader;
-import com.bergerkiller.bukkit.common.config.DataWriter;
-import com.bergerkiller.bukkit.common.utils.MathUtil;
 import com.bergerkiller.bukkit.common.utils.StreamUtil;
 import com.bergerkiller.bukkit.common.utils.WorldUtil;
-import com.bergerkiller.bukkit.common.wrappers.LongHashSet.LongIterator;
 import com.bergerkiller.bukkit.tc.TrainCarts;
 import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
-import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroupStore;
 import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
+import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Minecart;
+import org.bukkit.entity.Player;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -22,12 +24,22 @@ import java.util.*;
 import java.util.logging.Level;
 
 public class OfflineGroupManager {
-    public static Long lastUnloadChunk = null;
-    private static boolean chunkLoadReq = false;
-    private static boolean isRefreshingGroups = false;
-    private static Set<String> containedTrains = new HashSet<>();
-    private static HashSet<UUID> containedMinecarts = new HashSet<>();
+    private static final int FORMAT_VERSION = 2;
+    /**
+     * Time spent restoring queued groups every tick, after the first group restored
+     */
+    private static final long RESTORE_TIME_BUDGET = 10000000L; // 10 ms
+    /**
+     * Interval in ticks at which the positions of virtually moving groups are checked
+     */
+    private static final int MOVEMENT_CHECK_INTERVAL = 20;
+    private static final Queue<OfflineGroup> restoreQueue = new ArrayDeque<>();
+    private static final Set<OfflineGroup> movingGroups = new LinkedHashSet<>();
+    private static int movementCheckCtr = 0;
+    private static Map<String, OfflineGroup> containedTrains = new HashMap<>();
+    private static Map<UUID, OfflineGroup> containedMinecarts = new HashMap<>();
     private static final Map<UUID, OfflineGroupManager> managers = new HashMap<>();
+    private static OfflineGroupJournal journal = null;
     private OfflineGroupMap groupmap = new OfflineGroupMap();
 
     public static OfflineGroupManager get(UUID uuid) {
@@ -44,28 +56,18 @@ public class OfflineGroupManager {
     }
 
     public static void loadChunk(Chunk chunk) {
-        chunkLoadReq = true;
-        // Ignore chunk loads while refreshing
-        if (isRefreshingGroups) {
-            return;
-        }
         synchronized (managers) {
             OfflineGroupManager man = managers.get(chunk.getWorld().getUID());
             if (man != null) {
                 if (man.groupmap.isEmpty()) {
                     managers.remove(chunk.getWorld().getUID());
                 } else {
-                    Set<OfflineGroup> groups = man.groupmap.remove(chunk);
+                    Set<OfflineGroup> groups = man.groupmap.get(chunk);
                     if (groups != null) {
                         for (OfflineGroup group : groups) {
-                            if (group.testFullyLoaded()) {
+                            if (group.missingChunks > 0 && --group.missingChunks == 0) {
                                 //a participant to be restored
-                                if (group.updateLoadedChunks(chunk.getWorld())) {
-                                    man.restoreGroup(group, chunk.getWorld());
-                                } else {
-                                    //add it again
-                                    man.groupmap.add(group);
-                                }
+                                queueRestore(group);
                             }
                         }
                     }
@@ -84,7 +86,9 @@ public class OfflineGroupManager {
                     Set<OfflineGroup> groupset = man.groupmap.get(chunk);
                     if (groupset != null) {
                         for (OfflineGroup group : groupset) {
-                            group.loadedChunks.remove(MathUtil.longHashToLong(chunk.getX(), chunk.getZ()));
+                            if (group.missingChunks < group.chunks.size()) {
+                                group.missingChunks++;
+                            }
                         }
                     }
                 }
@@ -98,6 +102,12 @@ public class OfflineGroupManager {
         }
     }
 
+    /**
+     * Counts the chunks that are not loaded for all groups on a world, and queues the
+     * groups of which all chunks are loaded to be restored
+     *
+     * @param world to refresh
+     */
     public static void refresh(World world) {
         synchronized (managers) {
             OfflineGroupManager man = managers.get(world.getUID());
@@ -131,14 +141,149 @@ public class OfflineGroupManager {
         if (TrainCarts.keepChunksLoadedOnlyWhenMoving && !group.isMoving()) {
             return false;
         }
-        // Load nearby chunks
-        LongIterator iter = group.chunks.longIterator();
-        long chunk;
-        while (iter.hasNext()) {
-            chunk = iter.next();
-            world.getChunkAt(MathUtil.longHashMsw(chunk), MathUtil.longHashLsw(chunk));
+        // Load nearby chunks, kept loaded until the group is restored and keeps them loaded itself
+        // Other groups in these chunks are queued by the chunk load events that follow
+        ChunkKeepAlive.loadTemporarily(world, group.chunks);
+        return group.updateLoadedChunks(world);
+    }
+
+    /**
+     * Restores a group right away when all its chunks are loaded, instead of waiting for
+     * the restore queue
+     *
+     * @param group to restore
+     * @return True if the group was restored, False if not
+     */
+    public static boolean restoreNow(OfflineGroup group) {
+        synchronized (managers) {
+            OfflineGroupManager man = managers.get(group.worldUUID);
+            World world = Bukkit.getWorld(group.worldUUID);
+            if (man == null || world == null || !man.groupmap.values().contains(group) || !group.updateLoadedChunks(world)) {
+                return false;
+            }
+            man.restoreGroup(group, world);
+            return true;
+        }
+    }
+
+    private static void queueRestore(OfflineGroup group) {
+        if (!group.queued) {
+            group.queued = true;
+            restoreQueue.add(group);
+        }
+    }
+
+    /**
+     * Restores the groups queued to be restored because all their chunks were loaded.
+     * At least one group is restored every tick, after which groups are restored until
+     * the time budget for this tick runs out. The remaining groups are restored the next tick.
+     */
+    public static void restoreQueued() {
+        synchronized (managers) {
+            if (restoreQueue.isEmpty()) {
+                return;
+            }
+            final long deadline = System.nanoTime() + RESTORE_TIME_BUDGET;
+            boolean restored = false;
+            OfflineGroup group;
+            while ((!restored || System.nanoTime() < deadline) && (group = restoreQueue.poll()) != null) {
+                group.queued = false;
+                OfflineGroupManager man = managers.get(group.worldUUID);
+                if (man == null || !man.groupmap.values().contains(group)) {
+                    continue; // Removed or restored in the meantime
+                }
+                World world = Bukkit.getWorld(group.worldUUID);
+                if (world == null) {
+                    continue;
+                }
+                // Groups moving virtually are no longer where they went offline
+                // Check again, chunks may have unloaded since it was queued
+                if (group.movement == null && group.updateLoadedChunks(world)) {
+                    man.restoreGroup(group, world);
+                    restored = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances the groups moving virtually towards their destination. Once the chunks around
+     * the position a group moved to are loaded, because a player is nearby or the group reached
+     * an area kept loaded, the group is restored at that position.
+     */
+    public static void updateMoving() {
+        synchronized (managers) {
+            if (movingGroups.isEmpty() || ++movementCheckCtr < MOVEMENT_CHECK_INTERVAL) {
+                return;
+            }
+            movementCheckCtr = 0;
+            final long deadline = System.nanoTime() + RESTORE_TIME_BUDGET;
+            boolean restored = false;
+            for (OfflineGroup group : new ArrayList<>(movingGroups)) {
+                if (restored && System.nanoTime() >= deadline) {
+                    break; // Continue next time
+                }
+                OfflineGroupManager man = managers.get(group.worldUUID);
+                World world = Bukkit.getWorld(group.worldUUID);
+                if (group.movement == null || man == null || world == null || !man.groupmap.values().contains(group)) {
+                    movingGroups.remove(group);
+                    group.releaseMemberChunks();
+                    continue;
+                }
+                if (!group.movement.update(MinecartGroupStore.getPhysicsTicks())) {
+                    // The route no longer exists, the group stays where it went offline
+                    group.movement = null;
+                    movingGroups.remove(group);
+                    group.releaseMemberChunks();
+                    if (group.updateLoadedChunks(world)) {
+                        queueRestore(group);
+                    }
+                    continue;
+                }
+                // Proxies are restored once seen, and only where the chunks around the position are loaded
+                if (group.movement.isProxy() && !isViewed(group, world)) {
+                    continue;
+                }
+                if (!group.movement.isPositionLoaded(world)) {
+                    continue;
+                }
+                // Wait for other trains to leave the track the group is restored on
+                if (!group.movement.isTrackFree(world, group)) {
+                    continue;
+                }
+                // The carts are still where the group went offline, load their chunks over the next ticks
+                if (group.loadMemberChunks(world)) {
+                    man.restoreGroup(group, world);
+                    restored = true;
+                }
+            }
         }
-        return true;
+    }
+
+    /**
+     * Checks whether a player is near the position a group moved to, or near the carts
+     * left behind where the group was stored
+     */
+    private static boolean isViewed(OfflineGroup group, World world) {
+        final double distanceSquared = TrainCarts.proxyViewDistance * TrainCarts.proxyViewDistance;
+        final double x = group.movement.getX();
+        final double z = group.movement.getZ();
+        for (Player player : world.getPlayers()) {
+            Location loc = player.getLocation();
+            double dx = loc.getX() - x;
+            double dz = loc.getZ() - z;
+            if ((dx * dx + dz * dz) <= distanceSquared) {
+                return true;
+            }
+            for (OfflineMember member : group.members) {
+                dx = loc.getX() - ((member.cx << 4) + 8);
+                dz = loc.getZ() - ((member.cz << 4) + 8);
+                if ((dx * dx + dz * dz) <= distanceSquared) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /*
@@ -161,14 +306,15 @@ public class OfflineGroupManager {
         }
         // Remove remaining offline groups
         synchronized (managers) {
-            OfflineGroupManager man = managers.remove(world.getUID());
+            OfflineGroupManager man = clearWorld(world.getUID());
             if (man != null) {
+                if (journal != null) {
+                    journal.clearWorld(world.getUID());
+                }
                 for (OfflineGroup wg : man.groupmap) {
                     count++;
-                    containedTrains.remove(wg.name);
                     TrainProperties.remove(wg.name);
                     for (OfflineMember wm : wg.members) {
-                        containedMinecarts.remove(wm.entityUID);
                         // Load the chunk this minecart is in and remove it
                         // We already de-linked the group map, so no worry for replacements
                         Chunk chunk = world.getChunkAt(wm.cx, wm.cz);
@@ -242,86 +388,228 @@ public class OfflineGroupManager {
     }
 
     public static void deinit() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        restoreQueue.clear();
+        for (OfflineGroup group : movingGroups) {
+            group.releaseMemberChunks();
+        }
+        movingGroups.clear();
         managers.clear();
         containedMinecarts.clear();
         containedTrains.clear();
     }
 
     /**
-     * Loads the buffered groups from file
+     * Loads the buffered groups from file, followed by the changes journaled since
+     * the file was last written
      *
      * @param filename - The groupdata file to read from
      */
     public static void init(String filename) {
         synchronized (managers) {
             deinit();
+            final long[] includedGeneration = new long[] {-1L};
+            final int tick = MinecartGroupStore.getPhysicsTicks();
             new DataReader(filename) {
                 public void read(DataInputStream stream) throws IOException {
-                    int totalgroups = 0;
-                    int totalmembers = 0;
-                    final int worldcount = stream.readInt();
+                    int worldcount = stream.readInt();
+                    int version = 0;
+                    if (worldcount < 0) {
+                        // Versioned format, which stores the last journal included
+                        version = -worldcount;
+                        if (version > FORMAT_VERSION) {
+                            throw new IOException("Unsupported groupdata version " + version);
+                        }
+                        includedGeneration[0] = stream.readLong();
+                        worldcount = stream.readInt();
+                    }
                     for (int worldIdx = 0; worldIdx < worldcount; worldIdx++) {
                         UUID worldUID = StreamUtil.readUUID(stream);
                         final int groupcount = stream.readInt();
-                        OfflineGroupManager man = get(worldUID);
 
                         // Read all the groups contained
                         for (int groupIdx = 0; groupIdx < groupcount; groupIdx++) {
                             OfflineGroup wg = OfflineGroup.readFrom(stream);
-                            wg.worldUUID = worldUID;
-
-                            // Register the new offline group within (this) Manager
-                            for (OfflineMember wm : wg.members) {
-                                containedMinecarts.add(wm.entityUID);
+                            if (version >= 2 && stream.readBoolean()) {
+                                wg.movement = OfflineGroupMovement.readFrom(stream, tick);
                             }
-                            man.groupmap.add(wg);
-                            containedTrains.add(wg.name);
-                            totalmembers += wg.members.length;
+                            addGroup(worldUID, wg);
                         }
-                        totalgroups += groupcount;
                     }
-                    String msg = totalgroups + " Train";
-                    if (totalgroups == 1) msg += " has";
-                    else msg += "s have";
-                    msg += " been loaded in " + worldcount + " world";
-                    if (worldcount != 1) msg += "s";
-                    msg += ". (" + totalmembers + " Minecart";
-                    if (totalmembers != 1) msg += "s";
-                    msg += ")";
-                    TrainCarts.plugin.log(Level.INFO, msg);
                 }
             }.read();
+
+            // Apply all changes made after the file was written
+            journal = new OfflineGroupJournal(filename);
+            boolean incomplete = journal.replay(includedGeneration[0], new OfflineGroupJournal.RecordHandler() {
+                public void handle(byte type, DataInputStream stream) throws IOException {
+                    switch (type) {
+                        case OfflineGroupJournal.STORE:
+                            UUID worldUID = StreamUtil.readUUID(stream);
+                            OfflineGroup wg = OfflineGroup.readFrom(stream);
+                            removeStoredGroup(wg.name);
+                            addGroup(worldUID, wg);
+                            break;
+                        case OfflineGroupJournal.RESTORE:
+                        case OfflineGroupJournal.REMOVE:
+                            removeStoredGroup(stream.readUTF());
+                            break;
+                        case OfflineGroupJournal.RENAME:
+                            renameStoredGroup(stream.readUTF(), stream.readUTF());
+                            break;
+                        case OfflineGroupJournal.REMOVE_MEMBER:
+                            removeStoredMember(StreamUtil.readUUID(stream));
+                            break;
+                        case OfflineGroupJournal.CLEAR_WORLD:
+                            clearWorld(StreamUtil.readUUID(stream));
+                            break;
+                        case OfflineGroupJournal.MOVE:
+                            String groupName = stream.readUTF();
+                            moveStoredGroup(groupName, OfflineGroupMovement.readFrom(stream, tick));
+                            break;
+                        default:
+                            throw new IOException("Unknown journal record type " + type);
+                    }
+                }
+            });
+            if (incomplete) {
+                // Compaction was interrupted, write the groupdata file before changing anything
+                journal.compactNow(captureSnapshot());
+            }
+
+            int totalgroups = 0;
+            int totalmembers = 0;
+            int worldcount = 0;
+            for (OfflineGroupManager man : managers.values()) {
+                if (!man.groupmap.isEmpty()) {
+                    worldcount++;
+                }
+                for (OfflineGroup wg : man.groupmap) {
+                    totalgroups++;
+                    totalmembers += wg.members.length;
+                }
+            }
+            String msg = totalgroups + " Train";
+            if (totalgroups == 1) msg += " has";
+            else msg += "s have";
+            msg += " been loaded in " + worldcount + " world";
+            if (worldcount != 1) msg += "s";
+            msg += ". (" + totalmembers + " Minecart";
+            if (totalmembers != 1) msg += "s";
+            msg += ")";
+            TrainCarts.plugin.log(Level.INFO, msg);
         }
     }
 
     /**
-     * Saves the buffered groups to file
+     * Saves the buffered groups to file. Changes are already appended to the journal
+     * as they happen, so this only writes the changes not yet written. When the journal
+     * has grown large, all groups are written to the groupdata file in the background.
      *
      * @param filename - The groupdata file to write to
      */
     public static void save(String filename) {
         synchronized (managers) {
-            new DataWriter(filename) {
-                public void write(DataOutputStream stream) throws IOException {
-                    //clear empty worlds
-                    Iterator<OfflineGroupManager> iter = managers.values().iterator();
-                    while (iter.hasNext()) {
-                        if (iter.next().groupmap.isEmpty()) {
-                            iter.remove();
-                        }
-                    }
+            if (journal == null) {
+                journal = new OfflineGroupJournal(filename);
+            }
+
+            //clear empty worlds
+            int groupcount = 0;
+            Iterator<OfflineGroupManager> iter = managers.values().iterator();
+            while (iter.hasNext()) {
+                OfflineGroupManager man = iter.next();
+                if (man.groupmap.isEmpty()) {
+                    iter.remove();
+                } else {
+                    groupcount += man.groupmap.size();
+                }
+            }
+
+            // Record how far the moving groups got, so they continue from there after a restart
+            final int tick = MinecartGroupStore.getPhysicsTicks();
+            for (OfflineGroup wg : movingGroups) {
+                if (wg.movement != null && containedTrains.get(wg.name) == wg && wg.movement.update(tick)) {
+                    journal.move(wg);
+                }
+            }
 
-                    //Write it
-                    stream.writeInt(managers.size());
-                    for (Map.Entry<UUID, OfflineGroupManager> entry : managers.entrySet()) {
-                        StreamUtil.writeUUID(stream, entry.getKey());
+            journal.flush();
+            if (journal.needsCompaction(groupcount)) {
+                journal.compact(captureSnapshot());
+            }
+        }
+    }
 
-                        stream.writeInt(entry.getValue().groupmap.size());
-                        for (OfflineGroup wg : entry.getValue().groupmap) wg.writeTo(stream);
+    /**
+     * Captures the names, members and positions of moving groups of all stored groups, which
+     * can then be written to the groupdata file on another thread. Groups only ever replace
+     * their member array, so the arrays can be shared. Positions are written to memory right away.
+     *
+     * @return groupdata writer
+     */
+    private static OfflineGroupJournal.SnapshotWriter captureSnapshot() {
+        final int tick = MinecartGroupStore.getPhysicsTicks();
+        final List<UUID> worlds = new ArrayList<>(managers.size());
+        final List<String[]> names = new ArrayList<>(managers.size());
+        final List<OfflineMember[][]> members = new ArrayList<>(managers.size());
+        final List<byte[][]> movements = new ArrayList<>(managers.size());
+        for (Map.Entry<UUID, OfflineGroupManager> entry : managers.entrySet()) {
+            OfflineGroupMap groupmap = entry.getValue().groupmap;
+            if (groupmap.isEmpty()) {
+                continue;
+            }
+            String[] worldNames = new String[groupmap.size()];
+            OfflineMember[][] worldMembers = new OfflineMember[worldNames.length][];
+            byte[][] worldMovements = new byte[worldNames.length][];
+            int i = 0;
+            for (OfflineGroup wg : groupmap) {
+                worldNames[i] = wg.name;
+                worldMembers[i] = wg.members;
+                if (wg.movement != null && wg.movement.update(tick)) {
+                    worldMovements[i] = captureMovement(wg.movement);
+                }
+                i++;
+            }
+            worlds.add(entry.getKey());
+            names.add(worldNames);
+            members.add(worldMembers);
+            movements.add(worldMovements);
+        }
+        return new OfflineGroupJournal.SnapshotWriter() {
+            public void write(DataOutputStream stream, long includedGeneration) throws IOException {
+                stream.writeInt(-FORMAT_VERSION);
+                stream.writeLong(includedGeneration);
+                stream.writeInt(worlds.size());
+                for (int w = 0; w < worlds.size(); w++) {
+                    StreamUtil.writeUUID(stream, worlds.get(w));
+                    String[] worldNames = names.get(w);
+                    OfflineMember[][] worldMembers = members.get(w);
+                    byte[][] worldMovements = movements.get(w);
+                    stream.writeInt(worldNames.length);
+                    for (int i = 0; i < worldNames.length; i++) {
+                        OfflineGroup.writeTo(stream, worldMembers[i], worldNames[i]);
+                        stream.writeBoolean(worldMovements[i] != null);
+                        if (worldMovements[i] != null) {
+                            stream.write(worldMovements[i]);
+                        }
                     }
                 }
-            }.write();
+            }
+        };
+    }
+
+    private static byte[] captureMovement(OfflineGroupMovement movement) {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        try {
+            movement.writeTo(new DataOutputStream(data));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex); // Can not happen, written to memory
         }
+        return data.toByteArray();
     }
 
     /**
@@ -330,6 +618,36 @@ public class OfflineGroupManager {
      * @param group to store
      */
     public static void storeGroup(MinecartGroup group) {
+        storeGroup(group, null);
+    }
+
+    /**
+     * Captures a group to be stored as proxy, which keeps moving towards its destination
+     * until a player comes near it. This fails when no route to the destination exists, or
+     * when the group is not moving.
+     *
+     * @param group to capture
+     * @return the group to store using {@link #storeGroup(MinecartGroup, OfflineGroup)},
+     * or null if the group can not be stored as proxy
+     */
+    public static OfflineGroup createProxy(MinecartGroup group) {
+        if (group == null || !group.isValid() || group.getWorld() == null) {
+            return null;
+        }
+        synchronized (managers) {
+            OfflineGroup wg = new OfflineGroup(group);
+            wg.movement = OfflineGroupMovement.create(wg, group, MinecartGroupStore.getPhysicsTicks(), true);
+            return (wg.movement == null) ? null : wg;
+        }
+    }
+
+    /**
+     * Stores the information of a group in this offline storage system
+     *
+     * @param group to store
+     * @param stored information captured before using {@link #createProxy(MinecartGroup)}, null to capture it now
+     */
+    public static void storeGroup(MinecartGroup group, OfflineGroup stored) {
         if (group == null || !group.isValid()) {
             return;
         }
@@ -338,16 +656,40 @@ public class OfflineGroupManager {
             return;
         }
         synchronized (managers) {
-            for (MinecartMember<?> mm : group) {
-                containedMinecarts.add(mm.getEntity().getUniqueId());
-            }
-            OfflineGroup wg = new OfflineGroup(group);
+            OfflineGroup wg = (stored == null) ? new OfflineGroup(group) : stored;
             wg.updateLoadedChunks(world);
+            if (wg.movement == null && TrainCarts.offlineTrainMovement) {
+                wg.movement = OfflineGroupMovement.create(wg, group, MinecartGroupStore.getPhysicsTicks(), false);
+            }
+            if (wg.movement != null) {
+                movingGroups.add(wg);
+            }
             get(world).groupmap.add(wg);
-            containedTrains.add(wg.name);
+            index(wg);
+            if (journal != null) {
+                journal.store(wg);
+                if (wg.movement != null) {
+                    journal.move(wg);
+                }
+            }
+            if (wg.movement == null && wg.testFullyLoaded()) {
+                // No chunk load event will follow to restore it
+                queueRestore(wg);
+            }
         }
     }
 
+    /**
+     * Checks whether a group can keep moving towards its destination once stored,
+     * which is required for it to be stored as proxy
+     *
+     * @param group to check
+     * @return True if the group can move while stored
+     */
+    public static boolean canMoveOffline(MinecartGroup group) {
+        return OfflineGroupMovement.canMove(group);
+    }
+
     /**
      * Check if a minecart is in an offline group<br>
      * Used to check if a minecart can be linked
@@ -355,7 +697,7 @@ public class OfflineGroupManager {
      * @param uniqueId of the Minecart
      */
     public static boolean containsMinecart(UUID uniqueId) {
-        return containedMinecarts.contains(uniqueId);
+        return containedMinecarts.containsKey(uniqueId);
     }
 
     public static int getStoredCount() {
@@ -363,67 +705,45 @@ public class OfflineGroupManager {
     }
 
     public static boolean contains(String trainname) {
-        return containedTrains.contains(trainname);
+        return containedTrains.containsKey(trainname);
     }
 
     public static void rename(String oldtrainname, String newtrainname) {
         synchronized (managers) {
-            for (OfflineGroupManager man : managers.values()) {
-                for (OfflineGroup group : man.groupmap) {
-                    if (group.name.equals(oldtrainname)) {
-                        group.name = newtrainname;
-                        containedTrains.remove(oldtrainname);
-                        containedTrains.add(newtrainname);
-                        return;
-                    }
-                }
+            if (renameStoredGroup(oldtrainname, newtrainname) && journal != null) {
+                journal.rename(oldtrainname, newtrainname);
             }
         }
     }
 
     public static void removeMember(UUID memberUUID) {
         synchronized (managers) {
-            if (containedMinecarts.remove(memberUUID)) {
-                for (OfflineGroupManager manager : managers.values()) {
-                    if (manager.groupmap.removeCart(memberUUID)) {
-                        break;
-                    }
-                }
+            if (removeStoredMember(memberUUID) && journal != null) {
+                journal.removeMember(memberUUID);
             }
         }
     }
 
     public static void removeGroup(String groupName) {
         synchronized (managers) {
-            containedTrains.remove(groupName);
-            for (OfflineGroupManager manager : managers.values()) {
-                OfflineGroup group = manager.groupmap.remove(groupName);
-                if (group != null) {
-                    for (OfflineMember member : group.members) {
-                        containedMinecarts.remove(member.entityUID);
-                    }
-                    break;
-                }
+            if (removeStoredGroup(groupName) != null && journal != null) {
+                journal.remove(groupName);
             }
         }
     }
 
     public static OfflineGroup findGroup(String groupName) {
         synchronized (managers) {
-            for (OfflineGroupManager manager : managers.values()) {
-                for (OfflineGroup group : manager.groupmap.values()) {
-                    if (group.name.equals(groupName)) {
-                        return group;
-                    }
-                }
-            }
+            return containedTrains.get(groupName);
         }
-        return null;
     }
 
     public static OfflineMember findMember(String groupName, UUID uuid) {
-        OfflineGroup group = findGroup(groupName);
-        if (group != null) {
+        OfflineGroup group;
+        synchronized (managers) {
+            group = containedMinecarts.get(uuid);
+        }
+        if (group != null && group.name.equals(groupName)) {
             for (OfflineMember member : group.members) {
                 if (member.entityUID.equals(uuid)) {
                     return member;
@@ -434,37 +754,139 @@ public class OfflineGroupManager {
     }
 
     public void refreshGroups(World world) {
-        // While refreshing, ignore incoming Chunk Load events
-        // We do not want the group map to change concurrently!
-        isRefreshingGroups = true;
-        List<OfflineGroup> groupsBuffer = new ArrayList<>(this.groupmap.size());
-        try {
-            // Keep refreshing until no new chunks are being loaded
-            // Why? Keepchunksloaded trains can cause other trains to load
-            do {
-                chunkLoadReq = false;
-
-                // Go by all groups and try to restore them
-                groupsBuffer.clear();
-                groupsBuffer.addAll(this.groupmap.values());
-                for (OfflineGroup group : groupsBuffer) {
-                    if (checkChunks(group, world)) {
-                        restoreGroup(group, world);
-                    }
-                }
-            } while (chunkLoadReq);
-        } catch (Throwable t) {
-            t.printStackTrace();
+        // Loading chunks for one group can cause entities to change the group map, so iterate a copy
+        List<OfflineGroup> groupsBuffer = new ArrayList<>(this.groupmap.values());
+        for (OfflineGroup group : groupsBuffer) {
+            if (this.groupmap.values().contains(group) && checkChunks(group, world)) {
+                queueRestore(group);
+            }
         }
-        isRefreshingGroups = false;
     }
 
     private void restoreGroup(OfflineGroup group, World world) {
-        containedTrains.remove(group.name);
         groupmap.remove(group);
+        unindex(group);
+        if (journal != null) {
+            journal.restore(group.name);
+        }
+        OfflineGroupMovement movement = group.movement;
+        if (movement != null) {
+            group.movement = null;
+            movingGroups.remove(group);
+            if (!movement.update(MinecartGroupStore.getPhysicsTicks())) {
+                movement = null; // Route no longer exists, restore where it went offline
+            }
+        }
+        MinecartGroup restored = group.create(world);
+        if (restored != null && movement != null) {
+            movement.apply(restored);
+        }
+        group.releaseMemberChunks();
+    }
+
+    /*
+     * Changes to the stored groups, without journaling them
+     */
+    private static void addGroup(UUID worldUID, OfflineGroup wg) {
+        wg.worldUUID = worldUID;
+        World world = Bukkit.getWorld(worldUID);
+        if (world != null) {
+            wg.updateLoadedChunks(world);
+        }
+        get(worldUID).groupmap.add(wg);
+        index(wg);
+        if (wg.movement != null) {
+            movingGroups.add(wg);
+        }
+    }
+
+    private static void moveStoredGroup(String groupName, OfflineGroupMovement movement) {
+        OfflineGroup group = containedTrains.get(groupName);
+        if (group == null) {
+            return;
+        }
+        group.movement = movement;
+        if (movement != null) {
+            movingGroups.add(group);
+        } else {
+            movingGroups.remove(group);
+        }
+    }
+
+    private static OfflineGroup removeStoredGroup(String groupName) {
+        OfflineGroup group = containedTrains.get(groupName);
+        if (group == null) {
+            return null;
+        }
+        OfflineGroupManager manager = managers.get(group.worldUUID);
+        if (manager != null) {
+            manager.groupmap.remove(group);
+        }
+        unindex(group);
+        return group;
+    }
+
+    private static boolean renameStoredGroup(String oldtrainname, String newtrainname) {
+        OfflineGroup group = containedTrains.remove(oldtrainname);
+        if (group == null) {
+            return false;
+        }
+        group.name = newtrainname;
+        containedTrains.put(newtrainname, group);
+        return true;
+    }
+
+    private static boolean removeStoredMember(UUID memberUUID) {
+        OfflineGroup group = containedMinecarts.get(memberUUID);
+        if (group == null) {
+            return false;
+        }
+        OfflineGroupManager manager = managers.get(group.worldUUID);
+        if (manager == null || !manager.groupmap.removeCart(group, memberUUID)) {
+            return false;
+        }
+        containedMinecarts.remove(memberUUID);
+        if (!manager.groupmap.values().contains(group)) {
+            // Last member was removed, the group is gone
+            unindex(group);
+        } else {
+            // The remaining members may be in chunks that are all loaded
+            World world = Bukkit.getWorld(group.worldUUID);
+            if (world != null && group.updateLoadedChunks(world)) {
+                queueRestore(group);
+            }
+        }
+        return true;
+    }
+
+    private static OfflineGroupManager clearWorld(UUID worldUID) {
+        OfflineGroupManager man = managers.remove(worldUID);
+        if (man != null) {
+            for (OfflineGroup wg : man.groupmap) {
+                unindex(wg);
+            }
+        }
+        return man;
+    }
+
+    /**
+     * Indexes a stored group by train name and by the UUIDs of its members
+     */
+    private static void index(OfflineGroup group) {
+        containedTrains.put(group.name, group);
         for (OfflineMember wm : group.members) {
-            containedMinecarts.remove(wm.entityUID);
+            containedMinecarts.put(wm.entityUID, group);
+        }
+    }
+
+    private static void unindex(OfflineGroup group) {
+        if (containedTrains.get(group.name) == group) {
+            containedTrains.remove(group.name);
+        }
+        for (OfflineMember wm : group.members) {
+            if (containedMinecarts.get(wm.entityUID) == group) {
+                containedMinecarts.remove(wm.entityUID);
+            }
         }
-        group.create(world);
     }
 }
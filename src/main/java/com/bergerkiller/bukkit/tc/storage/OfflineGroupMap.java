@@ -7,7 +7,8 @@ import org.bukkit.Chunk;
 import java.util.*;
 
 /**
- * Maps all the Offline Groups to chunk coordinates, allowing faster chunk access for restoring trains
+ * Maps all the Offline Groups to chunk coordinates, allowing faster chunk access for restoring trains.
+ * Groups are indexed by train name and member UUID for all worlds at once in {@link OfflineGroupManager}.
  */
 public class OfflineGroupMap implements Iterable<OfflineGroup> {
     private Set<OfflineGroup> groups = new HashSet<>();
@@ -29,50 +30,42 @@ public class OfflineGroupMap implements Iterable<OfflineGroup> {
     public void add(OfflineGroup group) {
         this.groups.add(group);
         for (long chunk : group.chunks) {
-            if (!group.loadedChunks.contains(chunk)) {
-                getOrCreate(chunk).add(group);
-            }
+            getOrCreate(chunk).add(group);
         }
     }
 
-    public boolean removeCart(UUID memberUUID) {
-        for (OfflineGroup group : groups) {
-            for (OfflineMember member : group.members) {
-                if (member.entityUID.equals(memberUUID)) {
-                    // Undo previous registration
-                    remove(group);
-                    // Remove this member from the group
-                    ArrayList<OfflineMember> members = new ArrayList<>();
-                    for (OfflineMember m : group.members) {
-                        if (!m.entityUID.equals(memberUUID)) {
-                            members.add(m);
-                        }
-                    }
-                    if (!members.isEmpty()) {
-                        group.members = members.toArray(new OfflineMember[0]);
-                        group.genChunks();
-                        add(group);
-                    }
-                    // Finished
-                    return true;
-                }
-            }
+    /**
+     * Removes a member from a group in this map. When no members are left, the group is removed.
+     *
+     * @param group containing the member
+     * @param memberUUID of the member
+     * @return True if the member was removed, False if the group is not in this map
+     */
+    public boolean removeCart(OfflineGroup group, UUID memberUUID) {
+        if (!this.groups.contains(group)) {
+            return false;
         }
-        return false;
-    }
-
-    public OfflineGroup remove(String groupName) {
-        for (OfflineGroup group : groups) {
-            if (group.name.equals(groupName)) {
-                remove(group);
-                return group;
+        // Undo previous registration
+        remove(group);
+        // Remove this member from the group
+        ArrayList<OfflineMember> members = new ArrayList<>();
+        for (OfflineMember m : group.members) {
+            if (!m.entityUID.equals(memberUUID)) {
+                members.add(m);
             }
         }
-        return null;
+        if (!members.isEmpty()) {
+            group.members = members.toArray(new OfflineMember[0]);
+            group.genChunks();
+            add(group);
+        }
+        return true;
     }
 
     public void remove(OfflineGroup group) {
-        this.groups.remove(group);
+        if (!this.groups.remove(group)) {
+            return;
+        }
         for (long chunk : group.chunks) {
             Set<OfflineGroup> groups = get(chunk);
             if (groups != null) {
@@ -84,24 +77,6 @@ public class OfflineGroupMap implements Iterable<OfflineGroup> {
         }
     }
 
-    public Set<OfflineGroup> remove(Chunk chunk) {
-        return remove(chunk.getX(), chunk.getZ());
-    }
-
-    public Set<OfflineGroup> remove(int x, int z) {
-        return remove(MathUtil.longHashToLong(x, z));
-    }
-
-    public Set<OfflineGroup> remove(long chunk) {
-        Set<OfflineGroup> rval = this.groupmap.remove(chunk);
-        if (rval != null) {
-            for (OfflineGroup group : rval) {
-                group.loadedChunks.add(chunk);
-            }
-        }
-        return rval;
-    }
-
     public Set<OfflineGroup> get(Chunk chunk) {
         return get(chunk.getX(), chunk.getZ());
     }
@@ -0,0 +1,356 @@
+package com.bergerkiller.bukkit.tc.storage;
+
+import com.bergerkiller.bukkit.common.BlockLocation;
+import com.bergerkiller.bukkit.common.entity.CommonEntity;
+import com.bergerkiller.bukkit.tc.TrainCarts;
+import com.bergerkiller.bukkit.tc.controller.MinecartGroup;
+import com.bergerkiller.bukkit.tc.controller.MinecartMember;
+import com.bergerkiller.bukkit.tc.controller.MinecartMemberStore;
+import com.bergerkiller.bukkit.tc.pathfinding.PathConnection;
+import com.bergerkiller.bukkit.tc.pathfinding.PathNode;
+import com.bergerkiller.bukkit.tc.properties.TrainProperties;
+import com.bergerkiller.bukkit.tc.utils.ChunkArea;
+import com.bergerkiller.bukkit.tc.utils.TrackIterator;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The virtual position of an offline group that keeps moving towards its destination
+ * along the path finding graph while its chunks are unloaded. The position is an edge of
+ * the route plus the distance travelled along that edge. It is computed from the ticks passed
+ * since the group went offline, so a moving group costs nothing until its position is checked.
+ * Groups no player can see are replaced by this movement as well, acting as a proxy of the group.
+ * Signs are not executed while moving virtually, so a proxy is only made of groups whose route
+ * passes no signs other than the switchers of the nodes along it.
+ * The position is saved with the group as the route from the last node passed, so the group
+ * continues from there after a restart.
+ */
+class OfflineGroupMovement {
+    private final PathNode[] route;
+    private final PathConnection[] edges;
+    private final double startOffset;
+    private final double speed;
+    private final int startTick;
+    private final boolean proxy;
+    private int graphVersion;
+    private int edge = 0;
+    private double offset = 0.0;
+    private Block rail = null;
+    private BlockFace railDirection = null;
+
+    private OfflineGroupMovement(PathNode[] route, PathConnection[] edges, double startOffset, double speed, int startTick, boolean proxy) {
+        this.route = route;
+        this.edges = edges;
+        this.startOffset = startOffset;
+        this.speed = speed;
+        this.startTick = startTick;
+        this.proxy = proxy;
+        this.graphVersion = PathNode.getGraphVersion();
+        this.offset = startOffset;
+    }
+
+    /**
+     * Creates the virtual movement of a group going offline, if it is moving towards a
+     * destination that can be reached from the last path node it passed
+     *
+     * @param stored offline group, storing the speed of the members
+     * @param group that goes offline
+     * @param tick at which the group goes offline, counted in physics ticks of the trains
+     * @param proxy whether the group is replaced because no player can see it
+     * @return virtual movement, or null if the group does not move towards a destination,
+     *         or if it is a proxy and its route passes signs other than switchers
+     */
+    public static OfflineGroupMovement create(OfflineGroup stored, MinecartGroup group, int tick, boolean proxy) {
+        if (!canMove(group)) {
+            return null;
+        }
+        TrainProperties prop = group.getProperties();
+        PathNode from = PathNode.get(prop.getLastPathNode());
+        PathNode to = PathNode.get(prop.getDestination());
+        double speed = 0.0;
+        for (OfflineMember member : stored.members) {
+            speed = Math.max(speed, Math.sqrt(member.motX * member.motX + member.motZ * member.motZ));
+        }
+        if (speed < CommonEntity.MIN_MOVE_SPEED) {
+            return null;
+        }
+        PathNode[] route = from.findRoute(to);
+        PathConnection[] edges = findEdges(route);
+        if (edges == null || (proxy && !isSwitchersOnly(route))) {
+            return null;
+        }
+
+        // The group already travelled past the last node, estimate how far
+        Block head = group.head().getBlock();
+        double startOffset = 0.0;
+        if (head != null) {
+            double dx = head.getX() - from.location.x;
+            double dy = head.getY() - from.location.y;
+            double dz = head.getZ() - from.location.z;
+            startOffset = Math.min(Math.sqrt(dx * dx + dy * dy + dz * dz), edges[0].distance);
+        }
+        return new OfflineGroupMovement(route, edges, startOffset, speed, tick, proxy);
+    }
+
+    /**
+     * Reads the position of a group written using {@link #writeTo(DataOutputStream)}.
+     * Physics ticks are counted from the start of the server, so the movement continues
+     * from the tick specified.
+     *
+     * @param stream to read from
+     * @param tick to continue moving from, counted in physics ticks of the trains
+     * @return virtual movement, or null if the route no longer exists
+     * @throws IOException when reading fails
+     */
+    public static OfflineGroupMovement readFrom(DataInputStream stream, int tick) throws IOException {
+        String[] names = new String[stream.readInt()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = stream.readUTF();
+        }
+        double offset = stream.readDouble();
+        double speed = stream.readDouble();
+        boolean proxy = stream.readBoolean();
+        PathNode[] route = new PathNode[names.length];
+        for (int i = 0; i < route.length; i++) {
+            if ((route[i] = PathNode.get(names[i])) == null) {
+                return null;
+            }
+        }
+        PathConnection[] edges = findEdges(route);
+        if (edges == null) {
+            return null;
+        }
+        return new OfflineGroupMovement(route, edges, Math.min(offset, edges[0].distance), speed, tick, proxy);
+    }
+
+    /**
+     * Writes the position as last computed by {@link #update(int)}: the remaining route
+     * starting at the last node passed, the distance travelled past that node and the speed
+     *
+     * @param stream to write to
+     * @throws IOException when writing fails
+     */
+    public void writeTo(DataOutputStream stream) throws IOException {
+        stream.writeInt(this.route.length - this.edge);
+        for (int i = this.edge; i < this.route.length; i++) {
+            stream.writeUTF(this.route[i].getName());
+        }
+        stream.writeDouble(this.offset);
+        stream.writeDouble(this.speed);
+        stream.writeBoolean(this.proxy);
+    }
+
+    /**
+     * Checks whether a group has a destination and passed a path node, without looking
+     * for the route between them
+     *
+     * @param group to check
+     * @return True if the group can possibly move towards its destination while offline
+     */
+    public static boolean canMove(MinecartGroup group) {
+        TrainProperties prop = group.getProperties();
+        if (!prop.hasDestination() || prop.getLastPathNode().isEmpty()) {
+            return false;
+        }
+        PathNode from = PathNode.get(prop.getLastPathNode());
+        PathNode to = PathNode.get(prop.getDestination());
+        return from != null && to != null && from != to;
+    }
+
+    private static boolean isSwitchersOnly(PathNode[] route) {
+        // The signs of the first and last node are already executed, or executed once restored
+        for (int i = 0; i < route.length - 1; i++) {
+            if (i > 0 && !route[i].isSwitcherOnly()) {
+                return false;
+            }
+            if (route[i].passesSignsTo(route[i + 1])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static PathConnection[] findEdges(PathNode[] route) {
+        if (route.length < 2) {
+            return null;
+        }
+        PathConnection[] edges = new PathConnection[route.length - 1];
+        for (int i = 0; i < edges.length; i++) {
+            if ((edges[i] = route[i].findConnection(route[i + 1])) == null) {
+                return null;
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Computes the position of the group at a tick
+     *
+     * @param tick to compute the position at, counted in physics ticks of the trains
+     * @return True if the position was computed, False if the route can no longer be followed
+     */
+    public boolean update(int tick) {
+        if (this.graphVersion != PathNode.getGraphVersion()) {
+            // Nodes were added or removed, check that the route still exists
+            // Removed nodes lose their index, so no chunks are loaded to check this
+            for (PathNode node : this.route) {
+                if (node.index < 0) {
+                    return false;
+                }
+            }
+            PathConnection[] edges = findEdges(this.route);
+            if (edges == null) {
+                return false;
+            }
+            System.arraycopy(edges, 0, this.edges, 0, edges.length);
+            this.graphVersion = PathNode.getGraphVersion();
+        }
+        double distance = this.startOffset + this.speed * (tick - this.startTick);
+        this.edge = 0;
+        while (distance > this.edges[this.edge].distance && this.edge < this.edges.length - 1) {
+            distance -= this.edges[this.edge].distance;
+            this.edge++;
+        }
+        // Once arrived, the group waits at the destination
+        this.offset = Math.min(distance, this.edges[this.edge].distance);
+        return true;
+    }
+
+    /**
+     * Gets whether the group was replaced by this virtual movement because no player could see it,
+     * instead of because its chunks unloaded
+     *
+     * @return True if the group is a proxy
+     */
+    public boolean isProxy() {
+        return this.proxy;
+    }
+
+    /**
+     * Gets the path node the group passed last
+     *
+     * @return last path node
+     */
+    public PathNode getLastNode() {
+        return this.route[this.edge];
+    }
+
+    /**
+     * Gets the X-coordinate of the position of the group, estimated in a straight line
+     * between the two nodes the group is between
+     *
+     * @return position X-coordinate
+     */
+    public double getX() {
+        BlockLocation from = this.route[this.edge].location;
+        BlockLocation to = this.route[this.edge + 1].location;
+        return from.x + this.getTheta() * (to.x - from.x);
+    }
+
+    /**
+     * Gets the Z-coordinate of the position of the group, estimated in a straight line
+     * between the two nodes the group is between
+     *
+     * @return position Z-coordinate
+     */
+    public double getZ() {
+        BlockLocation from = this.route[this.edge].location;
+        BlockLocation to = this.route[this.edge + 1].location;
+        return from.z + this.getTheta() * (to.z - from.z);
+    }
+
+    private double getTheta() {
+        int distance = this.edges[this.edge].distance;
+        return (distance == 0) ? 1.0 : (this.offset / distance);
+    }
+
+    /**
+     * Checks whether the chunks around the position of the group, and the chunk of the node
+     * it passed last, are all loaded, at which point the group can be restored there
+     *
+     * @param world the group is in
+     * @return True if the chunks around the position are loaded
+     */
+    public boolean isPositionLoaded(World world) {
+        BlockLocation node = this.route[this.edge].location;
+        if (!world.isChunkLoaded(node.x >> 4, node.z >> 4)) {
+            return false;
+        }
+        int cx = ((int) Math.floor(this.getX())) >> 4;
+        int cz = ((int) Math.floor(this.getZ())) >> 4;
+        for (int x = cx - ChunkArea.CHUNK_RANGE; x <= cx + ChunkArea.CHUNK_RANGE; x++) {
+            for (int z = cz - ChunkArea.CHUNK_RANGE; z <= cz + ChunkArea.CHUNK_RANGE; z++) {
+                if (!world.isChunkLoaded(x, z)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the track the group is restored on is free of other trains. Restoring
+     * the group while another train occupies that track would make the two collide.
+     * Only track in loaded chunks is checked, see {@link #isPositionLoaded(World)}.
+     *
+     * @param world the group is in
+     * @param group that is restored
+     * @return True if no other train occupies the track
+     */
+    public boolean isTrackFree(World world, OfflineGroup group) {
+        if (!this.findRail(world)) {
+            return true;
+        }
+        int distance = (int) Math.ceil(group.members.length * TrainCarts.cartDistance) + 1;
+        TrackIterator iter = new TrackIterator(this.rail, this.railDirection, distance, true);
+        while (iter.hasNext()) {
+            Block block = iter.next();
+            if (block == null) {
+                break;
+            }
+            MinecartMember<?> member = MinecartMemberStore.getAt(block);
+            if (member != null && !group.containsMember(member.getEntity().getUniqueId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves a restored group to the position it virtually moved to, following the track from
+     * the last node passed. The inertia of the group is kept. Only track in loaded chunks is
+     * followed, see {@link #isPositionLoaded(World)}.
+     *
+     * @param group that was restored
+     */
+    public void apply(MinecartGroup group) {
+        if (!this.findRail(group.getWorld())) {
+            return;
+        }
+        group.getProperties().setLastPathNode(this.getLastNode().getName());
+        group.teleportAndGo(this.rail, this.railDirection);
+    }
+
+    private boolean findRail(World world) {
+        BlockLocation node = this.route[this.edge].location;
+        if (!world.isChunkLoaded(node.x >> 4, node.z >> 4)) {
+            return false;
+        }
+        Block start = world.getBlockAt(node.x, node.y, node.z);
+        BlockFace direction = this.edges[this.edge].direction;
+        int distance = (int) this.offset;
+        TrackIterator iter = new TrackIterator(start, direction, distance, true);
+        this.rail = start;
+        while (iter.hasNext() && iter.getDistance() < distance) {
+            this.rail = iter.next();
+            direction = iter.currentDirection();
+        }
+        this.railDirection = direction;
+        return true;
+    }
+}
@@ -58,21 +58,27 @@ public class OfflineMember {
         this.motZ = vel.getZ();
     }
 
+    /**
+     * Finds the Minecart of this member. The chunks around the member are loaded before
+     * the group is restored, so no chunks are loaded to find it.
+     *
+     * @param world to find the Minecart in
+     * @return the Minecart converted to a member, or null if it could not be found
+     */
     public MinecartMember<?> create(World world) {
         MinecartMember<?> mm = null;
         // first try to find it in the chunk
-        Chunk c = world.getChunkAt(cx, cz);
-        for (Entity e : WorldUtil.getEntities(c)) {
-            if (e instanceof Minecart && e.getUniqueId().equals(this.entityUID)) {
-                mm = MinecartMemberStore.convert((Minecart) e);
-                break;
+        if (world.isChunkLoaded(cx, cz)) {
+            Chunk c = world.getChunkAt(cx, cz);
+            for (Entity e : WorldUtil.getEntities(c)) {
+                if (e instanceof Minecart && e.getUniqueId().equals(this.entityUID)) {
+                    mm = MinecartMemberStore.convert((Minecart) e);
+                    break;
+                }
             }
         }
-        // Try to find it in the world
+        // Try to find it in the world, it may have moved into another loaded chunk
         if (mm == null) {
-            // Load a 5x5 chunk area around this Minecart so it can properly be found
-            WorldUtil.loadChunks(world, this.cx, this.cz, 2);
-            // Try to find it
             Entity e = EntityUtil.getEntity(world, this.entityUID);
             if (e instanceof Minecart) {
                 mm = MinecartMemberStore.convert((Minecart) e);
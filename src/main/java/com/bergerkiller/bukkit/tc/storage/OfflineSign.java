@@ -2,8 +2,8 @@ package com.bergerkiller.bukkit.tc.storage;
 
 import com.bergerkiller.bukkit.common.bases.IntVector3;
 import com.bergerkiller.bukkit.common.utils.MaterialUtil;
-import com.bergerkiller.bukkit.common.utils.WorldUtil;
 import com.bergerkiller.bukkit.tc.events.SignActionEvent;
+import com.bergerkiller.bukkit.tc.utils.ChunkKeepAlive;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 
@@ -28,7 +28,7 @@ public abstract class OfflineSign {
     }
 
     public void loadChunks(World world) {
-        WorldUtil.loadChunks(world, this.location.x >> 4, this.location.z >> 4, 3);
+        ChunkKeepAlive.loadTemporarily(world, this.location.x >> 4, this.location.z >> 4, 3);
     }
 
     public void remove(Block signBlock) {
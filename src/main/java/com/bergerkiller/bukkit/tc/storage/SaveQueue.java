@@ -0,0 +1,187 @@
+package com.bergerkiller.bukkit.tc.storage;
+
+import com.bergerkiller.bukkit.common.config.BasicConfiguration;
+import com.bergerkiller.bukkit.tc.TrainCarts;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Writes snapshots of the stored data to file on a single background thread.
+ * Snapshots are taken on the main thread, after which encoding, compressing and writing
+ * them happens in the background. When a file is saved again before the previous snapshot
+ * of it was written, only the newest snapshot is written.<br><br>
+ * <p/>
+ * Files are written to a temporary file first, which then replaces the file, so a crash
+ * while writing never leaves a partially written file behind.
+ */
+public final class SaveQueue {
+    private static final Map<File, Snapshot> pending = new LinkedHashMap<>();
+    private static Thread worker = null;
+
+    /**
+     * Schedules a snapshot to be written to a file in the background.
+     * A snapshot of the same file that is not yet being written is replaced.
+     *
+     * @param file to write to
+     * @param snapshot to write
+     */
+    public static void submit(File file, Snapshot snapshot) {
+        synchronized (pending) {
+            pending.remove(file);
+            pending.put(file, snapshot);
+            if (worker == null) {
+                worker = new Thread("TrainCarts save writer") {
+                    @Override
+                    public void run() {
+                        processPending();
+                    }
+                };
+                worker.start();
+            }
+        }
+    }
+
+    /**
+     * Schedules a snapshot to be written to a file in the background
+     *
+     * @param filename of the file to write to
+     * @param snapshot to write
+     */
+    public static void submit(String filename, Snapshot snapshot) {
+        submit(new File(filename).getAbsoluteFile(), snapshot);
+    }
+
+    /**
+     * Waits until all snapshots scheduled to be written are written
+     */
+    public static void waitForSaves() {
+        synchronized (pending) {
+            while (worker != null) {
+                try {
+                    pending.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void processPending() {
+        while (true) {
+            File file;
+            Snapshot snapshot;
+            synchronized (pending) {
+                Iterator<Map.Entry<File, Snapshot>> iter = pending.entrySet().iterator();
+                if (!iter.hasNext()) {
+                    worker = null;
+                    pending.notifyAll();
+                    return;
+                }
+                Map.Entry<File, Snapshot> next = iter.next();
+                iter.remove();
+                file = next.getKey();
+                snapshot = next.getValue();
+            }
+            write(file, snapshot);
+        }
+    }
+
+    /**
+     * Writes a snapshot to a file on the calling thread
+     *
+     * @param file to write to
+     * @param snapshot to write
+     * @return True if the file was written, False if writing failed
+     */
+    public static boolean write(File file, Snapshot snapshot) {
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                parent.mkdirs();
+            }
+            try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+                snapshot.write(stream);
+            }
+            try {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Throwable t) {
+            TrainCarts.plugin.getLogger().log(Level.SEVERE, "Failed to save " + file.getName(), t);
+            tmpFile.delete();
+            return false;
+        }
+        snapshot.saved();
+        return true;
+    }
+
+    /**
+     * Data captured on the main thread, which can be written to file from any thread
+     */
+    public static abstract class Snapshot {
+
+        /**
+         * Writes the data to a file
+         *
+         * @param stream to write to
+         * @throws IOException when writing fails
+         */
+        public abstract void write(DataOutputStream stream) throws IOException;
+
+        /**
+         * Called after the data was successfully written to file. This is called on the
+         * thread that wrote the file, which is usually the background writer thread, so
+         * state changed here and read on the main thread must be volatile or synchronized.
+         */
+        public void saved() {
+        }
+    }
+
+    /**
+     * Snapshot of data already encoded on the main thread, used for small amounts of data
+     */
+    public static class BytesSnapshot extends Snapshot {
+        private final byte[] data;
+
+        public BytesSnapshot(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public void write(DataOutputStream stream) throws IOException {
+            stream.write(this.data);
+        }
+    }
+
+    /**
+     * Snapshot of a configuration filled on the main thread, which is no longer changed after.
+     * Converting it to YAML happens in the background.
+     */
+    public static class ConfigurationSnapshot extends Snapshot {
+        private final BasicConfiguration config;
+
+        public ConfigurationSnapshot(BasicConfiguration config) {
+            this.config = config;
+        }
+
+        @Override
+        public void write(DataOutputStream stream) throws IOException {
+            stream.write(this.config.saveToString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -1,15 +1,17 @@
 package com.bergerkiller.bukkit.tc.utils;
 
-import com.bergerkiller.bukkit.common.bases.IntVector2;
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet;
 
 /**
- * Stores the chunk coordinates and a 5x5 chunk area around it
+ * Stores the chunk coordinates and a 5x5 chunk area around it.
+ * The chunks are stored as chunk keys (see {@link MathUtil#longHashToLong(int, int)}).
  */
 public class ChunkArea {
     public static final int CHUNK_RANGE = 2;
     public static final int CHUNK_EDGE = 2 * CHUNK_RANGE + 1;
     public static final int CHUNK_AREA = CHUNK_EDGE * CHUNK_EDGE;
-    private final IntVector2[] chunks = new IntVector2[CHUNK_AREA];
+    private final long[] chunks = new long[CHUNK_AREA];
     private int x, z;
 
     public ChunkArea(ChunkArea area) {
@@ -30,10 +32,21 @@ public class ChunkArea {
         return z;
     }
 
-    public IntVector2[] getChunks() {
+    public long[] getChunks() {
         return chunks;
     }
 
+    /**
+     * Adds all chunks of this area to a set
+     *
+     * @param set to add to
+     */
+    public void addChunksTo(LongHashSet set) {
+        for (long chunk : this.chunks) {
+            set.add(chunk);
+        }
+    }
+
     public void update(ChunkArea area) {
         if (this.x != area.x || this.z != area.z) {
             this.x = area.x;
@@ -55,7 +68,7 @@ public class ChunkArea {
         int i = 0;
         for (cx = -CHUNK_RANGE; cx <= CHUNK_RANGE; cx++) {
             for (cz = -CHUNK_RANGE; cz <= CHUNK_RANGE; cz++) {
-                chunks[i++] = new IntVector2(x + cx, z + cz);
+                chunks[i++] = MathUtil.longHashToLong(x + cx, z + cz);
             }
         }
     }
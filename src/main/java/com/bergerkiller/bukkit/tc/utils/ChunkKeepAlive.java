@@ -0,0 +1,287 @@
+package com.bergerkiller.bukkit.tc.utils;
+
+import com.bergerkiller.bukkit.common.utils.MathUtil;
+import com.bergerkiller.bukkit.common.wrappers.LongHashMap;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet;
+import com.bergerkiller.bukkit.common.wrappers.LongHashSet.LongIterator;
+import org.bukkit.World;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+
+/**
+ * Keeps chunks loaded for as long as trains or signs need them. Every chunk has a count of
+ * the tickets referencing it, and is loaded when the first ticket references it. Once no tickets
+ * reference a chunk anymore, it is kept loaded for a little while longer before it is allowed
+ * to unload, so chunks at the edge of a train moving back and forth do not load and unload
+ * over and over.<br><br>
+ * <p/>
+ * Tickets can also request chunks without loading them right away. These chunks are loaded
+ * a few at a time every tick, so requesting a lot of chunks ahead of time does not cause
+ * a lag spike.
+ */
+public class ChunkKeepAlive {
+    /**
+     * Amount of ticks a chunk is kept loaded after no tickets reference it anymore
+     */
+    public static final int UNLOAD_DELAY = 100;
+    /**
+     * Maximum amount of requested chunks loaded every tick
+     */
+    public static final int LOADS_PER_TICK = 4;
+    /**
+     * Maximum amount of time in nanoseconds spent loading requested chunks every tick
+     */
+    public static final long LOAD_TIME_BUDGET = 5000000L;
+    private static final Map<UUID, LongHashMap<KeptChunk>> worlds = new HashMap<>();
+    private static final Queue<Release> releaseQueue = new ArrayDeque<>();
+    private static final Queue<KeptChunk> loadQueue = new ArrayDeque<>();
+    private static int currentTick = 0;
+
+    /**
+     * Checks whether a chunk is kept loaded, in which case it should not unload
+     *
+     * @param world of the chunk
+     * @param cx chunk X-coordinate
+     * @param cz chunk Z-coordinate
+     * @return True if the chunk is kept loaded
+     */
+    public static boolean isKeptLoaded(World world, int cx, int cz) {
+        LongHashMap<KeptChunk> chunks = worlds.get(world.getUID());
+        return chunks != null && chunks.get(MathUtil.longHashToLong(cx, cz)) != null;
+    }
+
+    /**
+     * Loads the chunks in a square area, and keeps them loaded for {@link #UNLOAD_DELAY} ticks
+     *
+     * @param world of the chunks
+     * @param cx chunk X-coordinate of the middle chunk
+     * @param cz chunk Z-coordinate of the middle chunk
+     * @param radius of the area in chunks
+     */
+    public static void loadTemporarily(World world, int cx, int cz, int radius) {
+        for (int x = cx - radius; x <= cx + radius; x++) {
+            for (int z = cz - radius; z <= cz + radius; z++) {
+                long key = MathUtil.longHashToLong(x, z);
+                acquire(world, key, true);
+                release(world, key);
+            }
+        }
+    }
+
+    /**
+     * Loads chunks, and keeps them loaded for {@link #UNLOAD_DELAY} ticks
+     *
+     * @param world of the chunks
+     * @param chunks to load
+     */
+    public static void loadTemporarily(World world, LongHashSet chunks) {
+        LongIterator iter = chunks.longIterator();
+        while (iter.hasNext()) {
+            long key = iter.next();
+            acquire(world, key, true);
+            release(world, key);
+        }
+    }
+
+    private static void acquire(World world, long key, boolean loadNow) {
+        LongHashMap<KeptChunk> chunks = worlds.get(world.getUID());
+        if (chunks == null) {
+            chunks = new LongHashMap<>();
+            worlds.put(world.getUID(), chunks);
+        }
+        KeptChunk chunk = chunks.get(key);
+        if (chunk == null) {
+            chunk = new KeptChunk(world, key);
+            chunks.put(key, chunk);
+        }
+        chunk.refs++;
+        int cx = MathUtil.longHashMsw(key);
+        int cz = MathUtil.longHashLsw(key);
+        if (world.isChunkLoaded(cx, cz)) {
+            return;
+        }
+        if (loadNow) {
+            world.getChunkAt(cx, cz);
+        } else if (!chunk.loadQueued) {
+            chunk.loadQueued = true;
+            loadQueue.add(chunk);
+        }
+    }
+
+    private static void release(World world, long key) {
+        LongHashMap<KeptChunk> chunks = worlds.get(world.getUID());
+        KeptChunk chunk = (chunks == null) ? null : chunks.get(key);
+        if (chunk != null && chunk.refs > 0 && --chunk.refs == 0) {
+            chunk.releaseTick = currentTick + UNLOAD_DELAY;
+            releaseQueue.add(new Release(chunk, chunk.releaseTick));
+        }
+    }
+
+    /**
+     * Loads some of the requested chunks, and allows the chunks no longer referenced for
+     * {@link #UNLOAD_DELAY} ticks to unload. Called every tick.
+     */
+    public static void tick() {
+        currentTick++;
+
+        // Load requested chunks, but no more than the budget allows
+        long startTime = System.nanoTime();
+        int loaded = 0;
+        KeptChunk queued;
+        while (loaded < LOADS_PER_TICK && (queued = loadQueue.poll()) != null) {
+            queued.loadQueued = false;
+            if (queued.refs == 0) {
+                continue; // No longer needed
+            }
+            LongHashMap<KeptChunk> chunks = worlds.get(queued.world.getUID());
+            if (chunks == null || chunks.get(queued.key) != queued) {
+                continue; // World was cleared
+            }
+            int cx = MathUtil.longHashMsw(queued.key);
+            int cz = MathUtil.longHashLsw(queued.key);
+            if (!queued.world.isChunkLoaded(cx, cz)) {
+                queued.world.getChunkAt(cx, cz);
+                loaded++;
+                if ((System.nanoTime() - startTime) >= LOAD_TIME_BUDGET) {
+                    break;
+                }
+            }
+        }
+
+        // Release chunks no longer needed
+        Release release;
+        while ((release = releaseQueue.peek()) != null && release.tick <= currentTick) {
+            releaseQueue.poll();
+            KeptChunk chunk = release.chunk;
+            if (chunk.refs > 0 || chunk.releaseTick != release.tick) {
+                continue; // Referenced again, or released again later on
+            }
+            LongHashMap<KeptChunk> chunks = worlds.get(chunk.world.getUID());
+            if (chunks == null || chunks.get(chunk.key) != chunk) {
+                continue; // World was cleared
+            }
+            chunks.remove(chunk.key);
+            if (chunks.size() == 0) {
+                worlds.remove(chunk.world.getUID());
+            }
+            chunk.world.unloadChunkRequest(MathUtil.longHashMsw(chunk.key), MathUtil.longHashLsw(chunk.key));
+        }
+    }
+
+    /**
+     * Forgets all chunks kept loaded on a world, called when the world unloads
+     *
+     * @param world to clear
+     */
+    public static void clear(World world) {
+        worlds.remove(world.getUID());
+    }
+
+    public static void deinit() {
+        worlds.clear();
+        releaseQueue.clear();
+        loadQueue.clear();
+    }
+
+    private static final class KeptChunk {
+        public final World world;
+        public final long key;
+        public int refs = 0;
+        public int releaseTick = 0;
+        public boolean loadQueued = false;
+
+        public KeptChunk(World world, long key) {
+            this.world = world;
+            this.key = key;
+        }
+    }
+
+    private static final class Release {
+        public final KeptChunk chunk;
+        public final int tick;
+
+        public Release(KeptChunk chunk, int tick) {
+            this.chunk = chunk;
+            this.tick = tick;
+        }
+    }
+
+    /**
+     * The chunks kept loaded by a single train or sign. Changing the chunks only
+     * acquires the chunks added and releases the chunks removed.
+     */
+    public static class Ticket {
+        private final LongHashSet chunks = new LongHashSet();
+        private World world = null;
+
+        /**
+         * Gets whether this ticket keeps any chunks loaded
+         *
+         * @return True if chunks are kept loaded
+         */
+        public boolean isActive() {
+            return this.world != null;
+        }
+
+        /**
+         * Sets the chunks kept loaded by this ticket, loading the chunks not yet loaded right away
+         *
+         * @param world of the chunks
+         * @param newChunks to keep loaded
+         */
+        public void update(World world, LongHashSet newChunks) {
+            update(world, newChunks, true);
+        }
+
+        /**
+         * Sets the chunks kept loaded by this ticket
+         *
+         * @param world of the chunks
+         * @param newChunks to keep loaded
+         * @param loadNow True to load the chunks not yet loaded right away, False to load them over the next ticks
+         */
+        public void update(World world, LongHashSet newChunks, boolean loadNow) {
+            if (world != this.world) {
+                this.release();
+                this.world = world;
+            }
+            LongIterator iter = newChunks.longIterator();
+            while (iter.hasNext()) {
+                long key = iter.next();
+                if (!this.chunks.contains(key)) {
+                    acquire(world, key, loadNow);
+                }
+            }
+            iter = this.chunks.longIterator();
+            while (iter.hasNext()) {
+                long key = iter.next();
+                if (!newChunks.contains(key)) {
+                    release(world, key);
+                }
+            }
+            this.chunks.clear();
+            iter = newChunks.longIterator();
+            while (iter.hasNext()) {
+                this.chunks.add(iter.next());
+            }
+        }
+
+        /**
+         * Stops keeping the chunks of this ticket loaded
+         */
+        public void release() {
+            if (this.world != null) {
+                LongIterator iter = this.chunks.longIterator();
+                while (iter.hasNext()) {
+                    release(this.world, iter.next());
+                }
+                this.chunks.clear();
+                this.world = null;
+            }
+        }
+    }
+}